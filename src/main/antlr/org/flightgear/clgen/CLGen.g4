@@ -24,6 +24,11 @@ projectProperties
 projectProperty
     : 'author' '(' STRING ')'                               # Author
     | 'wrapper' '(' BOOLEAN ')'                             # Wrapper
+    | 'template' '(' STRING ')'                             # Template
+    | 'compact' '(' BOOLEAN ')'                             # Compact
+    | 'graph' '(' STRING ')'                                # Graph
+    | 'xref' '(' BOOLEAN ')'                                # Xref
+    | 'columns' '(' INTEGER ')'                             # Columns
     ;
 
 // ----------------------------------------------------------------------------
@@ -41,7 +46,16 @@ itemElement
     ;
 
 declaration
-    : ID '=' STRING ';'
+    : identifier '=' STRING ';'
+    ;
+
+identifier
+    : ID
+    | 'template'
+    | 'compact'
+    | 'graph'
+    | 'xref'
+    | 'columns'
     ;
 
 state
@@ -75,7 +89,7 @@ terminal
     | DOUBLE                                                # DoubleTerminal
     | BOOLEAN                                               # BooleanTerminal
     | STRING                                                # StringTerminal
-    | ID                                                    # IdTerminal
+    | identifier                                            # IdTerminal
     ;
 
 binding
@@ -95,21 +109,21 @@ bindingCondition
     ;
 
 bindingAction
-    : ID '=' INTEGER                                        # AssignInt
-    | ID '=' DOUBLE                                         # AssignDouble
-    | ID '=' BOOLEAN                                        # AssignBool
-    | ID '=' STRING                                         # AssignString
-    | ID '=' ID                                             # AssignId
+    : identifier '=' INTEGER                                # AssignInt
+    | identifier '=' DOUBLE                                 # AssignDouble
+    | identifier '=' BOOLEAN                                # AssignBool
+    | identifier '=' STRING                                 # AssignString
+    | identifier '=' identifier                             # AssignId
     | 'fgcommand' '(' STRING (',' parameter)* ')'           # Command
     ;
 
 parameter
-    : ID '=' INTEGER                                        # IntParam
-    | ID '=' DOUBLE                                         # DoubleParam
-    | ID '=' BOOLEAN                                        # BoolParam
-    | ID '=' STRING                                         # StringParam
-    | ID '=' ID                                             # IdParam
-    | ID {
+    : identifier '=' INTEGER                                # IntParam
+    | identifier '=' DOUBLE                                 # DoubleParam
+    | identifier '=' BOOLEAN                                # BoolParam
+    | identifier '=' STRING                                 # StringParam
+    | identifier '=' identifier                             # IdParam
+    | identifier {
         notifyErrorListeners("Missing parameter name");
     }                                                       # ParameterError
     ;
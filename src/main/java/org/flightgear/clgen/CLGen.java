@@ -18,7 +18,6 @@ package org.flightgear.clgen;
 
 import java.io.IOException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.Map;
 
 import org.antlr.v4.runtime.CharStreams;
@@ -27,15 +26,29 @@ import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
 import org.flightgear.clgen.CLGenParser.SpecificationContext;
 import org.flightgear.clgen.ast.AbstractSyntaxTree;
+import org.flightgear.clgen.ast.AbstractSyntaxTree.Graph;
 import org.flightgear.clgen.ast.Item;
+import org.flightgear.clgen.backend.AnalysisVisitor;
 import org.flightgear.clgen.backend.DotVisitor;
+import org.flightgear.clgen.backend.IncrementalPdfVisitor;
 import org.flightgear.clgen.backend.MultiXmlVisitor;
+import org.flightgear.clgen.backend.ParallelPdfVisitor;
+import org.flightgear.clgen.backend.ParallelXmlVisitor;
 import org.flightgear.clgen.backend.PdfVisitor;
+import org.flightgear.clgen.backend.SplitDotVisitor;
+import org.flightgear.clgen.backend.TemplateVisitor;
 import org.flightgear.clgen.backend.UsageVisitor;
 import org.flightgear.clgen.backend.XmlVisitor;
+import org.flightgear.clgen.backend.XrefVisitor;
+import org.flightgear.clgen.eval.BindingSimulator;
+import org.flightgear.clgen.eval.PropertyTree;
+import org.flightgear.clgen.eval.Replay;
 import org.flightgear.clgen.listener.ChecklistListener;
 import org.flightgear.clgen.listener.ErrorListener;
 import org.flightgear.clgen.listener.ItemListener;
+import org.flightgear.clgen.props.PropsMonitor;
+import org.flightgear.clgen.props.PropsServer;
+import org.flightgear.clgen.reverse.BatchReverser;
 import org.flightgear.clgen.reverse.ChecklistParser;
 
 /**
@@ -45,20 +58,24 @@ import org.flightgear.clgen.reverse.ChecklistParser;
  */
 class CLGen {
 
+    private static final long MONITOR_INTERVAL = 500;
+
     private ErrorListener errorListener;
     private final ParseTreeWalker walker = new ParseTreeWalker();
 
+    private final CLGenOptions options;
     private final Path input;
     private int errors = 0;
     private int warnings = 0;
 
     /**
-     * Constructs the main class with the path of the input file.
+     * Constructs the main class with the command line options.
      *
-     * @param input the path to the input file
+     * @param options the command line options
      */
-    private CLGen(final Path input) {
-        this.input = input;
+    private CLGen(final CLGenOptions options) {
+        this.options = options;
+        input = options.getInput();
     }
 
     /**
@@ -69,17 +86,23 @@ class CLGen {
     public static void main(final String[] args) {
         CLGenProperties properties = CLGenProperties.getInstance();
         System.out.format("CLGen %s\n", properties.getVersion());
-        if (args.length != 1) {
-            usage();
+        CLGenOptions options = null;
+        try {
+            options = CLGenOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            CLGenOptions.usage();
             System.exit(-1);
         }
-        Path path = Paths.get(args[0]).normalize();
+        Path path = options.getInput();
         if (path.toFile().canRead())
             try {
-                if (path.toString().endsWith("xml"))
+                if (path.toFile().isDirectory()) {
+                    if (new BatchReverser(path, options.getOutput()).run() > 0)
+                        System.exit(-1);
+                } else if (path.toString().endsWith("xml"))
                     new ChecklistParser(path).run();
                 else
-                    new CLGen(path).run();
+                    new CLGen(options).run();
             } catch (Exception e) {
                 e.printStackTrace(System.err);
                 System.err.println("Generation failed.");
@@ -91,13 +114,6 @@ class CLGen {
         }
     }
 
-    /*
-     * Prints a usage message to standard output.
-     */
-    private static void usage() {
-        System.out.println("Usage: clgen INPUT_FILE");
-    }
-
     /*
      * Coordinates the parsing and generation process in multiple phases.
      *
@@ -137,14 +153,44 @@ class CLGen {
             UsageVisitor usageVisitor = new UsageVisitor(items);
             ast.accept(usageVisitor);
             warnings += usageVisitor.getNumberOfWarnings();
+            if (options.isAnalysis()) {
+                AnalysisVisitor analysisVisitor = new AnalysisVisitor(items);
+                ast.accept(analysisVisitor);
+                warnings += analysisVisitor.getNumberOfWarnings();
+            }
+            if (options.isBindings())
+                for (String failure : new BindingSimulator(new PropertyTree()).verify(items.values())) {
+                    System.out.format("warning: %s\n", failure);
+                    ++warnings;
+                }
 
-            if (ast.isWrapper())
+            if (ast.isWrapper() && options.isParallel())
+                ast.accept(new ParallelXmlVisitor(input.toAbsolutePath().getParent()));
+            else if (ast.isWrapper())
                 ast.accept(new MultiXmlVisitor(input.toAbsolutePath().getParent()));
             else
                 ast.accept(new XmlVisitor(input.toAbsolutePath().getParent()));
 
-            ast.accept(new DotVisitor(input.toAbsolutePath().getParent()));
-            ast.accept(new PdfVisitor(input.toAbsolutePath().getParent()));
+            if (ast.getGraph() == Graph.SINGLE)
+                ast.accept(new DotVisitor(input.toAbsolutePath().getParent()));
+            else
+                ast.accept(new SplitDotVisitor(input.toAbsolutePath().getParent()));
+            if (options.isIncremental())
+                ast.accept(new IncrementalPdfVisitor(
+                    input.toAbsolutePath().getParent(), options.isParallel()
+                ));
+            else if (options.isParallel())
+                ast.accept(new ParallelPdfVisitor(input.toAbsolutePath().getParent()));
+            else
+                ast.accept(new PdfVisitor(input.toAbsolutePath().getParent(), ast.getColumns()));
+            if (ast.isXref())
+                ast.accept(new XrefVisitor(input.toAbsolutePath().getParent()));
+            ast.accept(new TemplateVisitor(input.toAbsolutePath().getParent()));
+            if (options.getReplay() != null) {
+                Replay replay = new Replay(ast);
+                replay.run(options.getReplay());
+                replay.report(System.out);
+            }
             if (warnings > 0)
                 System.out.format(
                     "Generation complete with %d warning%s.\n",
@@ -153,6 +199,35 @@ class CLGen {
                 );
             else
                 System.out.println("Generation complete.");
+            if (options.getServe() >= 0 || options.getMonitorHost() != null)
+                live(ast);
+        }
+    }
+
+    /*
+     * Runs the stand-in property server and the checklist monitor, until
+     * the program is interrupted.
+     */
+    private void live(final AbstractSyntaxTree ast) throws IOException {
+        PropsServer server = null;
+        if (options.getServe() >= 0) {
+            server = new PropsServer(new PropertyTree(), options.getServe());
+            System.out.format("Serving properties on port %d.\n", server.getPort());
+        }
+        try {
+            if (options.getMonitorHost() != null)
+                try (PropsMonitor monitor = new PropsMonitor(ast,
+                        options.getMonitorHost(), options.getMonitorPort())) {
+                    monitor.run(MONITOR_INTERVAL, System.out);
+                }
+            else
+                while (true)
+                    Thread.sleep(Long.MAX_VALUE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (server != null)
+                server.close();
         }
     }
 
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Command line options.
+ * <p>
+ * Options control how CLGen runs rather than what it generates. Output
+ * formats are controlled by project properties in the input file.
+ *
+ * @author Richard Senior
+ */
+class CLGenOptions {
+
+    private Path input;
+    private boolean parallel = false;
+    private boolean incremental = false;
+    private boolean bindings = false;
+    private boolean analysis = true;
+    private Path output = Paths.get("");
+    private Path replay = null;
+    private String monitorHost = null;
+    private int monitorPort = -1;
+    private int serve = -1;
+
+    /**
+     * Parses command line arguments.
+     *
+     * @param args the program arguments
+     * @return the parsed options
+     * @throws IllegalArgumentException if the arguments are not valid
+     */
+    static CLGenOptions parse(final String[] args) throws IllegalArgumentException {
+        CLGenOptions options = new CLGenOptions();
+        for (int i = 0; i < args.length; ++i) {
+            String arg = args[i];
+            switch (arg) {
+            case "-p":
+            case "--parallel":
+                options.parallel = true;
+                break;
+            case "-i":
+            case "--incremental":
+                options.incremental = true;
+                break;
+            case "-b":
+            case "--bindings":
+                options.bindings = true;
+                break;
+            case "-n":
+            case "--no-analysis":
+                options.analysis = false;
+                break;
+            case "-o":
+            case "--output":
+                if (++i == args.length)
+                    throw new IllegalArgumentException(arg);
+                options.output = Paths.get(args[i]).normalize();
+                break;
+            case "-m":
+            case "--monitor":
+                if (++i == args.length || !args[i].matches("[^:]+:\\d+"))
+                    throw new IllegalArgumentException(arg);
+                options.monitorHost = args[i].substring(0, args[i].lastIndexOf(':'));
+                options.monitorPort = Integer.parseInt(args[i].substring(args[i].lastIndexOf(':') + 1));
+                break;
+            case "-s":
+            case "--serve":
+                if (++i == args.length || !args[i].matches("\\d+"))
+                    throw new IllegalArgumentException(arg);
+                options.serve = Integer.parseInt(args[i]);
+                break;
+            case "-r":
+            case "--replay":
+                if (++i == args.length)
+                    throw new IllegalArgumentException(arg);
+                options.replay = Paths.get(args[i]).normalize();
+                break;
+            default:
+                if (arg.startsWith("-") || options.input != null)
+                    throw new IllegalArgumentException(arg);
+                options.input = Paths.get(arg).normalize();
+            }
+        }
+        if (options.input == null)
+            throw new IllegalArgumentException("missing input file");
+        return options;
+    }
+
+    /**
+     * Prints a usage message to standard output.
+     */
+    static void usage() {
+        System.out.println("Usage: clgen [OPTIONS] INPUT_FILE");
+        System.out.println("       clgen [OPTIONS] DIRECTORY");
+        System.out.println("Options:");
+        System.out.println("  -p, --parallel    generate output files in parallel, starting each");
+        System.out.println("                    checklist on a new page of the PDF");
+        System.out.println("  -i, --incremental only render checklists that have changed in the PDF,");
+        System.out.println("                    starting each checklist on a new page");
+        System.out.println("  -b, --bindings    check that the bindings of each state satisfy its condition");
+        System.out.println("  -n, --no-analysis do not check the conditions of the states in each item");
+        System.out.println("  -o, --output DIR  output directory when reversing a directory");
+        System.out.println("  -r, --replay LOG  replay a CSV property log against the checklists");
+        System.out.println("  -m, --monitor HOST:PORT");
+        System.out.println("                    show the checklists of a running simulator");
+        System.out.println("  -s, --serve PORT  run a stand-in property server on a local port");
+    }
+
+    /**
+     * @return the path of the input file
+     */
+    Path getInput() {
+        return input;
+    }
+
+    /**
+     * Gets the output directory for reverse engineering a directory tree.
+     *
+     * @return the output directory
+     */
+    Path getOutput() {
+        return output;
+    }
+
+    /**
+     * Gets whether the bindings of each state should be simulated to check
+     * that they satisfy the condition of the state.
+     *
+     * @return true if bindings should be checked
+     */
+    boolean isBindings() {
+        return bindings;
+    }
+
+    /**
+     * Gets whether the conditions of the states in each item should be
+     * analyzed for states that overlap, can never be true or leave gaps.
+     *
+     * @return true if conditions should be analyzed
+     */
+    boolean isAnalysis() {
+        return analysis;
+    }
+
+    /**
+     * Gets the CSV property log to replay against the checklists.
+     *
+     * @return the path of the log, or null if there is no log to replay
+     */
+    Path getReplay() {
+        return replay;
+    }
+
+    /**
+     * Gets the host of the property server to monitor.
+     *
+     * @return the host, or null if there is nothing to monitor
+     */
+    String getMonitorHost() {
+        return monitorHost;
+    }
+
+    /**
+     * Gets the port of the property server to monitor.
+     *
+     * @return the port
+     */
+    int getMonitorPort() {
+        return monitorPort;
+    }
+
+    /**
+     * Gets the port for the stand-in property server.
+     *
+     * @return the port, or -1 if no server should be run
+     */
+    int getServe() {
+        return serve;
+    }
+
+    /**
+     * Gets whether output files should be generated in parallel.
+     *
+     * @return true if output should be generated in parallel
+     */
+    boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Gets whether the PDF should be assembled from cached checklists.
+     *
+     * @return true if the PDF should be generated incrementally
+     */
+    boolean isIncremental() {
+        return incremental;
+    }
+
+}
@@ -17,7 +17,10 @@
 package org.flightgear.clgen.ast;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Abstract representation of checklists and checks.
@@ -26,11 +29,30 @@ import java.util.List;
  */
 public class AbstractSyntaxTree implements Visitable {
 
+    /**
+     * Layouts of the DOT output.
+     */
+    public enum Graph {
+        /** A single graph of all the checklists */
+        SINGLE,
+        /** A separate graph for each checklist */
+        SPLIT,
+        /** A separate graph for each checklist, plus a summary with clusters */
+        CLUSTERS
+    }
+
     private String author;
     private String project;
     private boolean wrapper = false;
+    private boolean compact = false;
+    private Graph graph = Graph.SINGLE;
+    private boolean xref = false;
+    private int columns = 1;
+    private final List<String> templates = new ArrayList<>();
 
     private final List<Checklist> checklists = new ArrayList<>();
+    private final Map<String, Checklist> checklistIndex = new HashMap<>();
+    private final Map<String, Item> items = new HashMap<>();
 
     /**
      * Gets the name of the project.
@@ -88,6 +110,97 @@ public class AbstractSyntaxTree implements Visitable {
         this.wrapper = wrapper;
     }
 
+    /**
+     * Gets whether XML files should be generated without indentation
+     *
+     * @return true if compact XML output is required
+     */
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * Sets whether XML files should be generated without indentation
+     *
+     * @param compact the compact flag
+     */
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * Gets the layout of the DOT output
+     *
+     * @return the graph layout
+     */
+    public Graph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Sets the layout of the DOT output
+     *
+     * @param graph the graph layout
+     */
+    public void setGraph(final Graph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Gets whether a property cross-reference should be generated
+     *
+     * @return true if cross-reference output is required
+     */
+    public boolean isXref() {
+        return xref;
+    }
+
+    /**
+     * Sets whether a property cross-reference should be generated
+     *
+     * @param xref the cross-reference flag
+     */
+    public void setXref(boolean xref) {
+        this.xref = xref;
+    }
+
+    /**
+     * Gets the number of columns on each page of the PDF.
+     *
+     * @return the number of columns
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Sets the number of columns on each page of the PDF.
+     *
+     * @param columns the number of columns
+     */
+    public void setColumns(int columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Gets the filenames of the user-defined templates, in the order they
+     * are declared.
+     *
+     * @return a list of template filenames, which may be empty
+     */
+    public List<String> getTemplates() {
+        return Collections.unmodifiableList(templates);
+    }
+
+    /**
+     * Adds the filename of a user-defined template.
+     *
+     * @param template the template filename
+     */
+    public void addTemplate(final String template) {
+        templates.add(template);
+    }
+
     /**
      * Gets the list of checklists defined in the input.
      *
@@ -99,11 +212,73 @@ public class AbstractSyntaxTree implements Visitable {
 
     /**
      * Adds a checklist to the abstract syntax tree.
+     * <p>
+     * The checklist is also registered in an index keyed by its title,
+     * ignoring case. If a checklist with the same title is already indexed,
+     * the index continues to refer to the first definition.
      *
      * @param checklist the checklist to add
+     * @return true if the title was not already defined, ignoring case
      */
-    public void addChecklist(final Checklist checklist) {
+    public boolean addChecklist(final Checklist checklist) {
         checklists.add(checklist);
+        return checklistIndex.putIfAbsent(fold(checklist.getTitle()), checklist) == null;
+    }
+
+    /**
+     * Looks up a checklist by title.
+     * <p>
+     * The comparison is not case sensitive, consistent with
+     * {@link Checklist#equals(Object)}.
+     *
+     * @param title the checklist title
+     * @return the first checklist defined with the title, or null if not found
+     */
+    public Checklist getChecklist(final String title) {
+        return checklistIndex.get(fold(title));
+    }
+
+    /**
+     * Gets the items registered with the abstract syntax tree.
+     *
+     * @return an unmodifiable map of items, keyed by name
+     */
+    public Map<String, Item> getItems() {
+        return Collections.unmodifiableMap(items);
+    }
+
+    /**
+     * Registers an item with the abstract syntax tree.
+     *
+     * @param item the item to register
+     * @return true if an item with the same name was not already registered
+     */
+    public boolean addItem(final Item item) {
+        return items.putIfAbsent(item.getName(), item) == null;
+    }
+
+    /**
+     * Looks up an item by name.
+     * <p>
+     * The comparison is case sensitive.
+     *
+     * @param name the item name
+     * @return the item, or null if not found
+     */
+    public Item getItem(final String name) {
+        return items.get(name);
+    }
+
+    /**
+     * Looks up a state of an item by item name and state name.
+     *
+     * @param itemName the item name
+     * @param stateName the state name
+     * @return the state, or null if either the item or state is not found
+     */
+    public State getState(final String itemName, final String stateName) {
+        Item item = items.get(itemName);
+        return item != null ? item.getStates().get(stateName) : null;
     }
 
     /**
@@ -123,4 +298,18 @@ public class AbstractSyntaxTree implements Visitable {
         return "AST";
     }
 
+    // Other methods
+
+    /*
+     * Folds a title to a key that matches String.equalsIgnoreCase semantics.
+     */
+    private static String fold(final String title) {
+        if (title == null)
+            return null;
+        char[] chars = title.toCharArray();
+        for (int i = 0; i < chars.length; ++i)
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        return new String(chars);
+    }
+
 }
@@ -18,7 +18,9 @@ package org.flightgear.clgen.ast;
 
 import java.io.StringWriter;
 import java.util.Calendar;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
@@ -32,16 +34,23 @@ import org.flightgear.clgen.CLGenProperties;
  * License builder.
  * <p>
  * Creates a license text block for inclusion in a header comment.
+ * <p>
+ * Velocity is initialized once per process and each template is loaded and
+ * parsed once. Rendered text is shared between licenses with the same
+ * variant, title, author and year, so a license for each of many output
+ * files costs little more than a map lookup.
  *
  * @author Richard Senior
  */
 public class License {
 
+    private static final Map<String, Template> templates = new ConcurrentHashMap<>();
+    private static final Map<String, String> texts = new ConcurrentHashMap<>();
+
+    private final String variant;
     private String author;
     private String title;
 
-    private Template template;
-
     /**
      * Constructs a license.
      * <p>
@@ -60,20 +69,8 @@ public class License {
      * @param variant the template filename without extension, e.g. "gpl2".
      */
     public License(final String variant) {
-        Properties p = new Properties();
-        p.put("runtime.log.logsystem.class", "org.apache.velocity.runtime.log.NullLogChute");
-        VelocityEngine velocity = new VelocityEngine(p);
-        try {
-            template = velocity.getTemplate("license.vm");
-        } catch (ResourceNotFoundException e) {
-            p = new Properties();
-            p.put(RuntimeConstants.RESOURCE_LOADER, "classpath");
-            p.put("classpath.resource.loader.class",
-                    ClasspathResourceLoader.class.getName()
-            );
-            velocity = new VelocityEngine(p);
-            template = velocity.getTemplate(variant + ".vm");
-        }
+        this.variant = variant;
+        templates.computeIfAbsent(variant, License::load);
     }
 
     /**
@@ -87,9 +84,9 @@ public class License {
     public String getText() {
         if (title == null || author == null)
             return null;
-        StringWriter sw = new StringWriter();
-        template.merge(velocityContext(), sw);
-        return sw.toString();
+        String year = Integer.toString(Calendar.getInstance().get(Calendar.YEAR));
+        String key = String.join("\0", variant, title, author, year);
+        return texts.computeIfAbsent(key, k -> render(year));
     }
 
     // Accessors
@@ -124,15 +121,50 @@ public class License {
 
     // Other methods
 
-    private VelocityContext velocityContext() {
+    private String render(final String year) {
         CLGenProperties properties = CLGenProperties.getInstance();
-        Calendar calendar = Calendar.getInstance();
         VelocityContext ctx = new VelocityContext();
         ctx.put("title", title);
-        ctx.put("year", Integer.toString(calendar.get(Calendar.YEAR)));
+        ctx.put("year", year);
         ctx.put("author", author);
         ctx.put("version", properties.getVersion());
-        return ctx;
+        StringWriter sw = new StringWriter();
+        templates.get(variant).merge(ctx, sw);
+        return sw.toString();
+    }
+
+    /*
+     * A license.vm in the working directory takes precedence over the
+     * variant on the classpath.
+     */
+    private static Template load(final String variant) {
+        try {
+            return Engines.FILE.getTemplate("license.vm");
+        } catch (ResourceNotFoundException e) {
+            return Engines.CLASSPATH.getTemplate(variant + ".vm");
+        }
+    }
+
+    /*
+     * Velocity engines, initialized on first use.
+     */
+    private static final class Engines {
+
+        static final VelocityEngine FILE;
+        static final VelocityEngine CLASSPATH;
+
+        static {
+            Properties p = new Properties();
+            p.put("runtime.log.logsystem.class", "org.apache.velocity.runtime.log.NullLogChute");
+            FILE = new VelocityEngine(p);
+            p = new Properties();
+            p.put(RuntimeConstants.RESOURCE_LOADER, "classpath");
+            p.put("classpath.resource.loader.class",
+                    ClasspathResourceLoader.class.getName()
+            );
+            CLASSPATH = new VelocityEngine(p);
+        }
+
     }
 
 }
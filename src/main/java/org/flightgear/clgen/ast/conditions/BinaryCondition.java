@@ -50,6 +50,24 @@ public class BinaryCondition extends AbstractCondition {
         return operator;
     }
 
+    /**
+     * Gets the left hand side of this condition.
+     *
+     * @return the left hand side
+     */
+    public AbstractCondition getLhs() {
+        return lhs;
+    }
+
+    /**
+     * Gets the right hand side of this condition.
+     *
+     * @return the right hand side
+     */
+    public AbstractCondition getRhs() {
+        return rhs;
+    }
+
     @Override
     public void addChild(final AbstractCondition child) {
         if (lhs == null)
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.backend;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.flightgear.clgen.ast.AbstractSyntaxTree;
+import org.flightgear.clgen.ast.Item;
+import org.flightgear.clgen.eval.StateAnalyzer;
+
+/**
+ * Analysis visitor.
+ * <p>
+ * Checks the conditions of the states in each item for states that can
+ * never be true, states that can be true together and values for which
+ * no state is true.
+ *
+ * @author Richard Senior
+ */
+public class AnalysisVisitor extends AbstractVisitor {
+
+    private final StateAnalyzer analyzer = new StateAnalyzer();
+    private final Map<String, Item> items;
+    private int warnings = 0;
+
+    /**
+     * Constructs an analysis visitor with the items lookup table.
+     *
+     * @param items the items lookup table
+     */
+    public AnalysisVisitor(final Map<String, Item> items) {
+        this.items = new TreeMap<>(items);
+    }
+
+    @Override
+    public void exit(final AbstractSyntaxTree ast) {
+        for (Item item : items.values())
+            for (String message : analyzer.analyze(item)) {
+                System.out.format("warning: %s\n", message);
+                ++warnings;
+            }
+    }
+
+    /**
+     * Gets the number of analysis warnings found by this visitor.
+     *
+     * @return the number of analysis warnings
+     */
+    public int getNumberOfWarnings() {
+        return warnings;
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.backend;
+
+import java.nio.file.Path;
+
+import org.flightgear.clgen.ast.Checklist;
+
+/**
+ * Checklist XML Visitor.
+ * <p>
+ * Writes one output XML file for each checklist it visits. This is the
+ * per-checklist part of {@link MultiXmlVisitor} and is also used on its own
+ * by {@link ParallelXmlVisitor}, with one instance per checklist.
+ *
+ * @author Richard Senior
+ */
+class ChecklistXmlVisitor extends XmlVisitor {
+
+    String author;
+
+    /**
+     * Constructs a checklist XML visitor with the path to an output directory.
+     *
+     * @param outputDir the path to the output directory
+     */
+    ChecklistXmlVisitor(final Path outputDir) {
+        super(outputDir);
+    }
+
+    /**
+     * Constructs a checklist XML visitor with the path to an output directory,
+     * the author for license headers and the layout.
+     *
+     * @param outputDir the path to the output directory
+     * @param author the author, may be null
+     * @param compact true to write without indentation
+     */
+    ChecklistXmlVisitor(final Path outputDir, final String author, final boolean compact) {
+        super(outputDir);
+        this.author = author;
+        this.compact = compact;
+    }
+
+    @Override
+    public void enter(final Checklist checklist) {
+        String title = String.format("Checklist: %s", checklist.getTitle());
+        xml = open(filename(checklist), title, author);
+        multiPage = checklist.getPages().size() > 1;
+
+        xml.startElement("PropertyList");
+        appendText("title", checklist.getTitle());
+    }
+
+    @Override
+    public void exit(final Checklist checklist) {
+        xml.endElement();
+        close(xml);
+    }
+
+}
@@ -16,21 +16,24 @@
  */
 package org.flightgear.clgen.backend;
 
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 
 import org.flightgear.clgen.GeneratorException;
 import org.flightgear.clgen.ast.AbstractSyntaxTree;
 import org.flightgear.clgen.ast.Check;
 import org.flightgear.clgen.ast.Checklist;
-import org.flightgear.clgen.ast.Page;
 
 /**
  * Creates a Graphviz DOT representation of the checklists.
  * <p>
  * This can be rendered to an image using:
  * <code>$ dot -ochecklists.png -Tpng checklists.dot</code>
+ * <p>
+ * The graph is streamed to the output file as the checks are visited. The
+ * checklist colors are written up front and the edges are written at the
+ * end by walking the checklists again, so nothing proportional to the size
+ * of the graph is held in memory.
  *
  * @author Richard Senior
  */
@@ -38,13 +41,10 @@ public class DotVisitor extends AbstractVisitor {
 
     private final Path outputDir;
 
-    private final StringBuilder dot = new StringBuilder();
-    private final StringBuilder nodes = new StringBuilder();
-    private final StringBuilder edges = new StringBuilder();
-
+    private DotWriter dot;
+    private String[] hues;
+    private int checklistIndex = 0;
     private int index = 0;
-    private double hue = 0.0;
-    private double colorCycle;
 
     /**
      * Constructs a DOT visitor with the path to the output directory.
@@ -56,96 +56,34 @@ public class DotVisitor extends AbstractVisitor {
     }
 
     @Override
-    public void enter(final AbstractSyntaxTree ast) {
-        colorCycle = 1.0 / ast.getChecklists().size();
-        dot.append("digraph G {\n")
-            .append("    pad=0.5;\n")
-            .append("    ranksep=0.35;\n");
-        if (ast.getProject() != null)
-            dot.append("    label=\"\\" + "n").append(ast.getProject()).append("\";\n");
-        dot.append("    node [fontsize=12];\n")
-            .append("    node [fontcolor=white,fontname=\"helvetica-bold\"];\n")
-            .append("    node [shape=Mrecord,width=2.75,style=filled];\n");
+    public void enter(final AbstractSyntaxTree ast) throws GeneratorException {
+        List<Checklist> checklists = ast.getChecklists();
+        hues = DotWriter.hues(checklists.size());
+        dot = new DotWriter(outputDir.resolve("checklists.dot"));
+        dot.header(ast.getProject());
+        for (int i = 0; i < checklists.size(); ++i)
+            dot.title(checklists.get(i), hues[i]);
+        dot.checkDefaults();
     }
 
     @Override
-    public void exit(final AbstractSyntaxTree ast) {
-        dot.append("    node [color=\"#404040\",fontcolor=\"#404040\",fontname=\"helvetica\"];\n")
-            .append("    node [shape=record,width=2.5,style=\"\"];\n");
-
-        dot.append(nodes.toString());
-        dot.append(edges.toString());
-
-        dot.append("}\n");
-        Path path = outputDir.resolve("checklists.dot");
-        try {
-            Files.write(path, dot.toString().getBytes());
-            System.out.println(path.toAbsolutePath().normalize().toString());
-        } catch (IOException e) {
-            String message = String.format("Failed to create DOT file at '%s'", path);
-            throw new GeneratorException(message, e);
-        }
-    }
-
-    @Override
-    public void enter(final Checklist checklist) {
-        String s = String.format("    node [color=\"%.04f,0.6,0.6\"]; %s;\n",
-            hue, quote(checklist.getTitle())
-        );
-        dot.append(s);
-        edges.append("    ").append(quote(checklist.getTitle()));
-        int totalChecks = 0;
-        for (Page page : checklist.getPages())
-            for (Check check : page.getChecks())
-                if (!check.isSpacer())
-                    ++totalChecks;
-        for (int i = 0; i < totalChecks; ++i)
-            edges.append(" -> ").append(index + i);
-        edges.append(";\n");
+    public void exit(final AbstractSyntaxTree ast) throws GeneratorException {
+        int first = 0;
+        for (Checklist checklist : ast.getChecklists())
+            first = dot.edges(checklist, first);
+        dot.close();
+        System.out.println(dot.getFile().describe());
     }
 
     @Override
     public void exit(final Checklist checklist) {
-        hue += colorCycle;
+        ++checklistIndex;
     }
 
     @Override
-    public void enter(final Check check) {
-        if (check.isSpacer())
-            return;
-        StringBuilder sb = new StringBuilder();
-        if (check.isSubtitle()) {
-            sb.append("    node [shape=box,style=\"rounded,filled\",");
-            sb.append(String.format("fillcolor=\"%.04f,0.1,0.95\"];\n", hue));
-            sb.append(String.format("    %d [label=\"%s\"];\n",
-                index++, escape(check.getItem().getName())
-            ));
-            sb.append("    node [shape=record,style=\"\"];\n");
-        } else {
-            sb.append(String.format("    %d [label=\"{%s",
-                index++, escape(check.getItem().getName())
-            ));
-            for (String value : check.getAdditionalValues())
-                sb.append("&#92;n").append(escape(value));
-            sb.append(String.format("|%s}\"];\n",
-                escape(check.getState().getName())
-            ));
-        }
-        nodes.append(sb.toString());
-    }
-
-    private String escape(final String s) {
-        return s
-            .replaceAll("[\"]", "\\\\\"")
-            .replace("|", "\\|")
-            .replace("<", "\\<")
-            .replace(">", "\\>")
-            .replace("{", "\\{")
-            .replace("}", "\\}");
-    }
-
-    private String quote(final String s) {
-        return String.format("\"%s\"", s);
+    public void enter(final Check check) throws GeneratorException {
+        if (dot.node(check, index, hues[checklistIndex]))
+            ++index;
     }
 
 }
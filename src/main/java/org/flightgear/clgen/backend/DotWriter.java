@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.backend;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.flightgear.clgen.GeneratorException;
+import org.flightgear.clgen.ast.Check;
+import org.flightgear.clgen.ast.Checklist;
+import org.flightgear.clgen.ast.Page;
+
+/**
+ * Streaming writer for Graphviz DOT files.
+ * <p>
+ * Writes the parts of a checklist graph straight to a buffered output file.
+ * Checklist graphs can be written at the top level of the file or inside a
+ * cluster subgraph, with statements indented to suit.
+ *
+ * @author Richard Senior
+ */
+class DotWriter {
+
+    private static final int BUFFER_SIZE = 65536;
+    private static final String INDENT = "    ";
+
+    private final OutputFile file;
+    private final Writer out;
+    private String indent = INDENT;
+
+    /**
+     * Constructs a DOT writer that writes a new graph to a file.
+     *
+     * @param path the path of the output file
+     * @throws GeneratorException if the file cannot be opened
+     */
+    DotWriter(final Path path) throws GeneratorException {
+        try {
+            file = new OutputFile(path);
+        } catch (IOException e) {
+            throw failed(path, e);
+        }
+        out = new BufferedWriter(new OutputStreamWriter(file, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Starts the graph and sets the defaults for checklist nodes.
+     *
+     * @param label the graph label, or null for no label
+     * @throws GeneratorException if the graph cannot be written
+     */
+    void header(final String label) throws GeneratorException {
+        try {
+            out.write("digraph G {\n");
+            line("pad=0.5;");
+            line("ranksep=0.35;");
+            if (label != null) {
+                out.write(indent);
+                out.write("label=\"\\n");
+                out.write(label);
+                out.write("\";\n");
+            }
+            line("node [fontsize=12];");
+            line("node [fontcolor=white,fontname=\"helvetica-bold\"];");
+            line("node [shape=Mrecord,width=2.75,style=filled];");
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * Writes the node for a checklist title.
+     *
+     * @param checklist the checklist
+     * @param hue the formatted hue of the checklist
+     * @throws GeneratorException if the node cannot be written
+     */
+    void title(final Checklist checklist, final String hue) throws GeneratorException {
+        try {
+            out.write(indent);
+            out.write("node [color=\"");
+            out.write(hue);
+            out.write(",0.6,0.6\"]; ");
+            quote(checklist.getTitle());
+            out.write(";\n");
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * Sets the defaults for check nodes.
+     *
+     * @throws GeneratorException if the defaults cannot be written
+     */
+    void checkDefaults() throws GeneratorException {
+        try {
+            line("node [color=\"#404040\",fontcolor=\"#404040\",fontname=\"helvetica\"];");
+            line("node [shape=record,width=2.5,style=\"\"];");
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * Writes the node for a check. Spacers have no node.
+     *
+     * @param check the check
+     * @param id the node id
+     * @param hue the formatted hue of the checklist
+     * @return true if a node was written
+     * @throws GeneratorException if the node cannot be written
+     */
+    boolean node(final Check check, final int id, final String hue) throws GeneratorException {
+        if (check.isSpacer())
+            return false;
+        try {
+            if (check.isSubtitle()) {
+                out.write(indent);
+                out.write("node [shape=box,style=\"rounded,filled\",fillcolor=\"");
+                out.write(hue);
+                out.write(",0.1,0.95\"];\n");
+                out.write(indent);
+                out.write(Integer.toString(id));
+                out.write(" [label=\"");
+                escape(check.getItem().getName());
+                out.write("\"];\n");
+                line("node [shape=record,style=\"\"];");
+            } else {
+                out.write(indent);
+                out.write(Integer.toString(id));
+                out.write(" [label=\"{");
+                escape(check.getItem().getName());
+                for (String value : check.getAdditionalValues()) {
+                    out.write("&#92;n");
+                    escape(value);
+                }
+                out.write('|');
+                escape(check.getState().getName());
+                out.write("}\"];\n");
+            }
+            return true;
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * Writes the nodes for all the checks in a checklist.
+     *
+     * @param checklist the checklist
+     * @param first the id of the first node
+     * @param hue the formatted hue of the checklist
+     * @return the id of the next node after the checklist
+     * @throws GeneratorException if the nodes cannot be written
+     */
+    int nodes(final Checklist checklist, final int first, final String hue)
+            throws GeneratorException {
+        int id = first;
+        for (Page page : checklist.getPages())
+            for (Check check : page.getChecks())
+                if (node(check, id, hue))
+                    ++id;
+        return id;
+    }
+
+    /**
+     * Writes the chain of edges from a checklist title through its checks.
+     *
+     * @param checklist the checklist
+     * @param first the id of the node for the first check
+     * @return the id of the next node after the checklist
+     * @throws GeneratorException if the edges cannot be written
+     */
+    int edges(final Checklist checklist, final int first) throws GeneratorException {
+        int id = first;
+        try {
+            out.write(indent);
+            quote(checklist.getTitle());
+            for (Page page : checklist.getPages())
+                for (Check check : page.getChecks())
+                    if (!check.isSpacer()) {
+                        out.write(" -> ");
+                        out.write(Integer.toString(id++));
+                    }
+            out.write(";\n");
+        } catch (IOException e) {
+            throw failed(e);
+        }
+        return id;
+    }
+
+    /**
+     * Starts a cluster subgraph. Statements are indented until the cluster
+     * ends.
+     *
+     * @param n the cluster number
+     * @param hue the formatted hue of the cluster outline
+     * @throws GeneratorException if the cluster cannot be written
+     */
+    void startCluster(final int n, final String hue) throws GeneratorException {
+        try {
+            out.write(indent);
+            out.write("subgraph cluster_");
+            out.write(Integer.toString(n));
+            out.write(" {\n");
+            indent += INDENT;
+            out.write(indent);
+            out.write("color=\"");
+            out.write(hue);
+            out.write(",0.6,0.6\";\n");
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * Ends a cluster subgraph.
+     *
+     * @throws GeneratorException if the cluster cannot be written
+     */
+    void endCluster() throws GeneratorException {
+        indent = indent.substring(INDENT.length());
+        try {
+            line("}");
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * Ends the graph and closes the output file.
+     *
+     * @throws GeneratorException if the graph cannot be completed
+     */
+    void close() throws GeneratorException {
+        try {
+            out.write("}\n");
+            out.close();
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * @return the output file
+     */
+    OutputFile getFile() {
+        return file;
+    }
+
+    // Other methods
+
+    /*
+     * Formats the hue of each of a number of checklists. The hue is
+     * accumulated rather than multiplied so that rounding matches earlier
+     * versions.
+     */
+    static String[] hues(final int n) {
+        String[] hues = new String[n];
+        double colorCycle = 1.0 / n;
+        double hue = 0.0;
+        for (int i = 0; i < n; ++i) {
+            hues[i] = String.format("%.04f", hue);
+            hue += colorCycle;
+        }
+        return hues;
+    }
+
+    private void line(final String s) throws IOException {
+        out.write(indent);
+        out.write(s);
+        out.write('\n');
+    }
+
+    /*
+     * Writes a string with the characters that are special in record labels
+     * escaped with a backslash.
+     */
+    private void escape(final String s) throws IOException {
+        int start = 0;
+        for (int i = 0; i < s.length(); ++i)
+            switch (s.charAt(i)) {
+            case '"': case '|': case '<': case '>': case '{': case '}':
+                out.write(s, start, i - start);
+                out.write('\\');
+                start = i;
+            }
+        out.write(s, start, s.length() - start);
+    }
+
+    private void quote(final String s) throws IOException {
+        out.write('"');
+        out.write(s);
+        out.write('"');
+    }
+
+    private GeneratorException failed(final IOException e) {
+        file.abort();
+        return failed(file.getPath(), e);
+    }
+
+    private static GeneratorException failed(final Path path, final IOException e) {
+        String message = String.format("Failed to create DOT file at '%s'", path);
+        return new GeneratorException(message, e);
+    }
+
+}
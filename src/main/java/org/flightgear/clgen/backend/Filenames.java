@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.backend;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.flightgear.clgen.GeneratorException;
+import org.flightgear.clgen.ast.Checklist;
+
+/**
+ * Checks the names of files written for each checklist.
+ * <p>
+ * Visitors that write the checklist files concurrently must not write two
+ * of them to the same file. Sequential generation lets the last checklist
+ * win when two titles map to the same filename, which has no equivalent
+ * when the files are written concurrently.
+ *
+ * @author Richard Senior
+ */
+class Filenames {
+
+    /**
+     * Checks that each checklist is written to a file of its own.
+     * <p>
+     * Reserved names are files written alongside the checklists, such as a
+     * wrapper or a summary.
+     *
+     * @param checklists the checklists
+     * @param extension the extension of the checklist files, e.g. ".xml"
+     * @param reserved the names of other files in the same directory
+     * @throws GeneratorException if two files would have the same name
+     */
+    static void check(final List<Checklist> checklists, final String extension,
+            final String... reserved) throws GeneratorException {
+        Map<String, Checklist> filenames = new HashMap<>();
+        for (Checklist checklist : checklists) {
+            String filename = XmlVisitor.basename(checklist) + extension;
+            if (Arrays.asList(reserved).contains(filename)) {
+                String message = String.format(
+                    "Checklist '%s' would be written to %s, which is already used",
+                    checklist.getTitle(), filename
+                );
+                throw new GeneratorException(message);
+            }
+            Checklist other = filenames.put(filename, checklist);
+            if (other != null) {
+                String message = String.format(
+                    "Checklists '%s' and '%s' would both be written to %s",
+                    other.getTitle(), checklist.getTitle(), filename
+                );
+                throw new GeneratorException(message);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.backend;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.flightgear.clgen.CLGenProperties;
+import org.flightgear.clgen.GeneratorException;
+import org.flightgear.clgen.ast.AbstractSyntaxTree;
+import org.flightgear.clgen.ast.Check;
+import org.flightgear.clgen.ast.Checklist;
+
+import com.lowagie.text.pdf.PdfReader;
+
+/**
+ * Incremental PDF Visitor.
+ * <p>
+ * Renders each checklist as a separate part in the same way as
+ * {@link ParallelPdfVisitor}, but keeps the parts in a cache directory
+ * alongside the output. Each part is named by a hash of everything that
+ * affects how it is drawn, so only checklists that have changed since the
+ * last run are rendered again. The parts are then merged and the pages
+ * numbered as before.
+ * <p>
+ * Parts that are no longer used are removed from the cache, and a part
+ * that cannot be read, for example after the disk filled up, is rendered
+ * again.
+ *
+ * @author Richard Senior
+ */
+public class IncrementalPdfVisitor extends AbstractVisitor {
+
+    private static final String CACHE_DIR = ".clgen-cache";
+
+    private final Path outputDir;
+    private final boolean parallel;
+
+    /**
+     * Constructs an incremental PDF visitor with the path to the output
+     * directory.
+     *
+     * @param outputDir the path to the output directory
+     * @param parallel true to render changed checklists in parallel
+     */
+    public IncrementalPdfVisitor(final Path outputDir, final boolean parallel) {
+        this.outputDir = outputDir;
+        this.parallel = parallel;
+    }
+
+    @Override
+    public void exit(final AbstractSyntaxTree ast) throws GeneratorException {
+        Path cache = outputDir.resolve(CACHE_DIR).resolve("pdf");
+        try {
+            Files.createDirectories(cache);
+        } catch (IOException e) {
+            throw new GeneratorException(e);
+        }
+        int n = Math.max(ast.getChecklists().size(), 1);
+        List<Path> paths = IntStream.range(0, n)
+            .mapToObj(i -> cache.resolve(key(ast, i) + ".pdf"))
+            .collect(Collectors.toList());
+        AtomicInteger rendered = new AtomicInteger();
+        IntStream indexes = IntStream.range(0, n);
+        List<byte[]> parts = (parallel ? indexes.parallel() : indexes)
+            .mapToObj(i -> part(ast, i, paths.get(i), rendered))
+            .collect(Collectors.toList());
+        OutputFile file = ParallelPdfVisitor.merge(parts, outputDir.resolve("checklists.pdf"));
+        prune(cache, new HashSet<>(paths));
+        System.out.println(file.describe(String.format("rendered %d of %d part%s",
+            rendered.get(), n, n != 1 ? "s" : ""
+        )));
+    }
+
+    // Other methods
+
+    /*
+     * Gets a part from the cache, rendering and caching it if it is missing
+     * or damaged.
+     */
+    private byte[] part(final AbstractSyntaxTree ast, final int i, final Path path,
+            final AtomicInteger rendered) {
+        try {
+            if (Files.isRegularFile(path)) {
+                byte[] part = Files.readAllBytes(path);
+                if (readable(part))
+                    return part;
+                Files.delete(path);
+            }
+            byte[] part = ParallelPdfVisitor.render(ast, i);
+            rendered.incrementAndGet();
+            OutputFile out = new OutputFile(path);
+            try {
+                out.write(part);
+            } catch (IOException e) {
+                out.abort();
+                throw e;
+            }
+            out.close();
+            return part;
+        } catch (IOException e) {
+            String message = String.format("Failed to write output file: %s", path.getFileName());
+            throw new GeneratorException(message, e);
+        }
+    }
+
+    /*
+     * Whether a cached part can be merged. The reader throws runtime
+     * exceptions as well as IOException for some kinds of damage.
+     */
+    private static boolean readable(final byte[] part) {
+        try {
+            PdfReader reader = new PdfReader(part);
+            boolean pages = reader.getNumberOfPages() > 0;
+            reader.close();
+            return pages;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /*
+     * Removes parts that the current checklists do not use.
+     */
+    private void prune(final Path cache, final Set<Path> used) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(cache, "*.pdf")) {
+            for (Path file : files)
+                if (!used.contains(file))
+                    Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // A stale part does no harm
+        }
+    }
+
+    /**
+     * Computes the cache key for a part. The key covers the CLGen version,
+     * the number of columns, the project title for the first part and the
+     * text of the checklist, but not the conditions and bindings, which do
+     * not appear in the PDF.
+     *
+     * @param ast the abstract syntax tree
+     * @param i the index of the checklist
+     * @return the key, as hexadecimal
+     */
+    static String key(final AbstractSyntaxTree ast, final int i) {
+        Digest digest = new Digest();
+        digest.update(CLGenProperties.getInstance().getVersion());
+        digest.update(Integer.toString(ast.getColumns()));
+        if (i == 0)
+            digest.update(ast.getProject() != null ? ast.getProject() : "");
+        if (i < ast.getChecklists().size())
+            ast.getChecklists().get(i).accept(digest);
+        return digest.hex();
+    }
+
+    /*
+     * Digests the text that the PDF visitor draws for a checklist. Each
+     * string is terminated so that adjacent strings cannot run together.
+     */
+    private static final class Digest extends AbstractVisitor {
+
+        private final MessageDigest md;
+
+        Digest() {
+            try {
+                md = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void enter(final Checklist checklist) {
+            update("checklist");
+            update(checklist.getTitle());
+        }
+
+        @Override
+        public void enter(final Check check) {
+            update("check");
+            update(check.getItem() != null ? check.getItem().getName() : null);
+            update(check.getState() != null ? check.getState().getName() : null);
+            for (String value : check.getAdditionalValues())
+                update(value);
+        }
+
+        void update(final String s) {
+            if (s != null)
+                md.update(s.getBytes(StandardCharsets.UTF_8));
+            md.update((byte)(s != null ? 0 : 1));
+        }
+
+        String hex() {
+            StringBuilder sb = new StringBuilder();
+            for (byte b : md.digest())
+                sb.append(String.format("%02x", b));
+            return sb.toString();
+        }
+
+    }
+
+}
@@ -17,14 +17,10 @@
 package org.flightgear.clgen.backend;
 
 import java.nio.file.Path;
-import java.util.ArrayDeque;
-import java.util.Deque;
 
 import org.flightgear.clgen.GeneratorException;
 import org.flightgear.clgen.ast.AbstractSyntaxTree;
 import org.flightgear.clgen.ast.Checklist;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
 /**
  * Multi-document XML Visitor.
@@ -33,65 +29,41 @@ import org.w3c.dom.Element;
  *
  * @author Richard Senior
  */
-public class MultiXmlVisitor extends XmlVisitor {
+public class MultiXmlVisitor extends ChecklistXmlVisitor {
 
-    private String author;
-    private Document wrapper;
-    private final Deque<Element> wrapperElements = new ArrayDeque<>();
+    private XmlWriter wrapper;
 
     /**
      * Constructs an XML visitor with the path to an output directory.
      *
      * @param outputDir the path to the output directory
-     * @throws GeneratorException if the visitor could not be created
      */
-    public MultiXmlVisitor(final Path outputDir) throws GeneratorException {
+    public MultiXmlVisitor(final Path outputDir) {
         super(outputDir);
     }
 
     @Override
     public void enter(final AbstractSyntaxTree ast) {
         String title = ast.getProject() != null ? ast.getProject() : "Checklists";
-        // Save author to field for use in enter checklist
+        // Save author and layout to fields for use in enter checklist
         author = ast.getAuthor();
-        wrapper = open(title, author);
-
-        Element e = wrapper.createElement("PropertyList");
-        wrapperElements.push(e);
-        wrapper.appendChild(e);
+        compact = ast.isCompact();
+        wrapper = open("checklists.xml", title, author);
+        wrapper.startElement("PropertyList");
     }
 
     @Override
     public void exit(final AbstractSyntaxTree ast) throws GeneratorException {
-        wrapperElements.pop();
-        assert wrapperElements.isEmpty();
-        XmlPostProcessor postProcessor = new XmlPostProcessor();
-        write(wrapper, "checklists.xml", postProcessor);
+        wrapper.endElement();
+        close(wrapper);
     }
 
     @Override
     public void enter(final Checklist checklist) throws GeneratorException {
-        String title = String.format("Checklist: %s", checklist.getTitle());
-        document = open(title, author);
-        multiPage = checklist.getPages().size() > 1;
-
-        Element e = document.createElement("PropertyList");
-        appendText(e, "title", checklist.getTitle());
-        document.appendChild(e);
-        elements.push(e);
-
-        Element c = wrapper.createElement("checklist");
-        c.setAttribute("include", filename(checklist));
-        wrapperElements.peek().appendChild(c);
-        wrapperElements.push(c);
-    }
-
-    @Override
-    public void exit(final Checklist checklist) {
-        elements.pop();
-        assert elements.isEmpty();
-        write(document, filename(checklist), new XmlPostProcessor());
-        wrapperElements.pop();
+        super.enter(checklist);
+        wrapper.startElement("checklist");
+        wrapper.attribute("include", filename(checklist));
+        wrapper.endElement();
     }
 
 }
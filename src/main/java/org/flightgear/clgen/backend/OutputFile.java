@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.backend;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Output stream that only replaces a file if its content changes.
+ * <p>
+ * While the bytes written match the existing file, they are compared and
+ * discarded. At the first difference, the matching prefix is copied to a
+ * temporary file in the same directory and everything after that is written
+ * there. Closing the stream moves the temporary file over the output file,
+ * atomically where the file system allows it. If nothing differs, the
+ * existing file is not touched and keeps its modification time.
+ * <p>
+ * A stream that is abandoned part way through, for example after an error,
+ * should be aborted rather than closed so that the existing file survives.
+ *
+ * @author Richard Senior
+ */
+public class OutputFile extends OutputStream {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Path path;
+    private InputStream existing = null;
+    private OutputStream out = null;
+    private Path temp = null;
+    private byte[] buffer = null;
+    private long position = 0;
+    private boolean changed = false;
+    private boolean finished = false;
+
+    /**
+     * Constructs an output file.
+     *
+     * @param path the path of the file
+     * @throws IOException if the existing file cannot be read or a temporary
+     * file cannot be created
+     */
+    public OutputFile(final Path path) throws IOException {
+        this.path = path;
+        if (Files.isRegularFile(path)) {
+            existing = new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE);
+            buffer = new byte[BUFFER_SIZE];
+        } else
+            diverge();
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[] { (byte)b }, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        if (finished)
+            return;
+        int matched = out == null ? compare(b, off, len) : 0;
+        position += matched;
+        if (matched < len) {
+            if (out == null)
+                diverge();
+            out.write(b, off + matched, len - matched);
+            position += len - matched;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (out != null)
+            out.flush();
+    }
+
+    /**
+     * Completes the file.
+     * <p>
+     * If the content differs from the existing file, or there was no
+     * existing file, the new content replaces it. Otherwise the existing
+     * file is left as it is.
+     *
+     * @throws IOException if the file cannot be written or replaced
+     */
+    @Override
+    public void close() throws IOException {
+        if (finished)
+            return;
+        if (out == null && existing.read() >= 0)
+            diverge();
+        finished = true;
+        if (out == null) {
+            existing.close();
+            return;
+        }
+        try {
+            out.close();
+            try {
+                Files.move(temp, path,
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING
+                );
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Abandons the file, leaving any existing file unchanged.
+     * <p>
+     * Anything written after the file is aborted is ignored.
+     */
+    public void abort() {
+        if (finished)
+            return;
+        finished = true;
+        try {
+            if (existing != null)
+                existing.close();
+            if (out != null) {
+                out.close();
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            // Nothing more can be done and the original error matters more
+        }
+    }
+
+    /**
+     * Describes the file as it is reported to the user, with its absolute
+     * path and a note if the existing file was unchanged.
+     *
+     * @return the description
+     */
+    public String describe() {
+        return describe(null);
+    }
+
+    /**
+     * Describes the file as it is reported to the user, with a note about
+     * its content.
+     *
+     * @param note the note, or null for no note
+     * @return the description
+     */
+    public String describe(final String note) {
+        String s = path.toAbsolutePath().normalize().toString();
+        if (!changed)
+            return note != null ? s + " (unchanged, " + note + ")" : s + " (unchanged)";
+        return note != null ? s + " (" + note + ")" : s;
+    }
+
+    // Accessors
+
+    /**
+     * @return the path of the file
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return the number of bytes written so far
+     */
+    public long getLength() {
+        return position;
+    }
+
+    /**
+     * Whether the file was, or will be, replaced. Only final once the
+     * file has been closed.
+     *
+     * @return true if the content differs from the existing file
+     */
+    public boolean isChanged() {
+        return changed;
+    }
+
+    // Other methods
+
+    /*
+     * Compares bytes against the existing file, returning the length of the
+     * matching prefix.
+     */
+    private int compare(final byte[] b, final int off, final int len) throws IOException {
+        int matched = 0;
+        while (matched < len) {
+            int n = existing.read(buffer, 0, Math.min(buffer.length, len - matched));
+            if (n < 0)
+                return matched;
+            for (int i = 0; i < n; ++i)
+                if (buffer[i] != b[off + matched + i])
+                    return matched + i;
+            matched += n;
+        }
+        return matched;
+    }
+
+    /*
+     * Switches from comparing to writing. The bytes that have matched so
+     * far are copied from the existing file to a new temporary file. The
+     * temporary file is created with the default permissions, so that the
+     * replaced file ends up with the same permissions as a new one.
+     */
+    private void diverge() throws IOException {
+        changed = true;
+        Path dir = path.toAbsolutePath().getParent();
+        temp = dir.resolve(String.format(".%s.%x.tmp",
+            path.getFileName(), ThreadLocalRandom.current().nextLong()
+        ));
+        out = new BufferedOutputStream(
+            Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE),
+            BUFFER_SIZE
+        );
+        if (existing == null)
+            return;
+        existing.close();
+        existing = null;
+        try (InputStream in = Files.newInputStream(path)) {
+            long remaining = position;
+            while (remaining > 0) {
+                int n = in.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+                if (n < 0)
+                    throw new IOException("Output file changed while writing: " + path);
+                out.write(buffer, 0, n);
+                remaining -= n;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.backend;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.flightgear.clgen.GeneratorException;
+import org.flightgear.clgen.ast.AbstractSyntaxTree;
+import org.flightgear.clgen.ast.Checklist;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.pdf.PdfCopy;
+import com.lowagie.text.pdf.PdfImportedPage;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfSmartCopy;
+
+/**
+ * Parallel PDF Visitor.
+ * <p>
+ * Renders each checklist to a separate in-memory PDF in a worker, then
+ * merges the parts into a single document and numbers the pages as they
+ * are copied. The project title is rendered with the first checklist.
+ * <p>
+ * Unlike {@link PdfVisitor}, each checklist starts on a new page.
+ *
+ * @author Richard Senior
+ */
+public class ParallelPdfVisitor extends AbstractVisitor {
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private final Path outputDir;
+
+    /**
+     * Constructs a parallel PDF visitor with the path to the output directory.
+     *
+     * @param outputDir the path to the output directory
+     */
+    public ParallelPdfVisitor(final Path outputDir) {
+        this.outputDir = outputDir;
+    }
+
+    @Override
+    public void exit(final AbstractSyntaxTree ast) throws GeneratorException {
+        List<Checklist> checklists = ast.getChecklists();
+        List<byte[]> parts = IntStream.range(0, Math.max(checklists.size(), 1))
+            .parallel()
+            .mapToObj(i -> render(ast, i))
+            .collect(Collectors.toList());
+        OutputFile file = merge(parts, outputDir.resolve("checklists.pdf"));
+        System.out.println(file.describe());
+    }
+
+    // Other methods
+
+    /**
+     * Renders one checklist as a part of a document. The first part also
+     * carries the title, and is the only part if there are no checklists.
+     *
+     * @param ast the abstract syntax tree
+     * @param i the index of the checklist
+     * @return the rendered part
+     */
+    static byte[] render(final AbstractSyntaxTree ast, final int i) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PdfVisitor visitor = new PdfVisitor(bytes, ast.getColumns());
+        if (i == 0)
+            visitor.enter(ast);
+        if (i < ast.getChecklists().size())
+            ast.getChecklists().get(i).accept(visitor);
+        visitor.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Merges rendered parts into a single document, adding page numbers.
+     *
+     * @param parts the rendered parts, in order
+     * @param path the path of the output file
+     * @return the output file
+     * @throws GeneratorException if the document cannot be written
+     */
+    static OutputFile merge(final List<byte[]> parts, final Path path)
+            throws GeneratorException {
+        OutputFile file;
+        try {
+            file = new OutputFile(path);
+        } catch (IOException e) {
+            throw new GeneratorException(e);
+        }
+        Document document = new Document();
+        try {
+            PdfCopy copy = new PdfSmartCopy(document, new BufferedOutputStream(file, BUFFER_SIZE));
+            copy.setFullCompression();
+            document.open();
+            int pageNumber = 0;
+            for (byte[] part : parts) {
+                PdfReader reader = new PdfReader(part);
+                for (int n = 1; n <= reader.getNumberOfPages(); ++n) {
+                    PdfImportedPage page = copy.getImportedPage(reader, n);
+                    PdfCopy.PageStamp stamp = copy.createPageStamp(page);
+                    PdfVisitor.pageNumber(stamp.getOverContent(), ++pageNumber,
+                        reader.getPageSizeWithRotation(n)
+                    );
+                    stamp.alterContents();
+                    copy.addPage(page);
+                }
+                copy.freeReader(reader);
+                reader.close();
+            }
+            document.close();
+        } catch (IOException | DocumentException e) {
+            file.abort();
+            document.close();
+            throw new GeneratorException(e);
+        }
+        return file;
+    }
+
+}
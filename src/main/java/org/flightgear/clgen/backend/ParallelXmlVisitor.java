@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.backend;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.flightgear.clgen.GeneratorException;
+import org.flightgear.clgen.ast.AbstractSyntaxTree;
+import org.flightgear.clgen.ast.Checklist;
+
+/**
+ * Parallel multi-document XML Visitor.
+ * <p>
+ * Produces the same output files as {@link MultiXmlVisitor} but builds and
+ * writes each checklist file in a separate worker with its own writer
+ * state. The wrapper is written once all checklist files are complete, in
+ * checklist order, so the output does not depend on scheduling.
+ *
+ * @author Richard Senior
+ */
+public class ParallelXmlVisitor extends AbstractVisitor {
+
+    private static final String WRAPPER = "checklists.xml";
+
+    private final Path outputDir;
+
+    /**
+     * Constructs a parallel XML visitor with the path to an output directory.
+     *
+     * @param outputDir the path to the output directory
+     */
+    public ParallelXmlVisitor(final Path outputDir) {
+        this.outputDir = outputDir;
+    }
+
+    @Override
+    public void exit(final AbstractSyntaxTree ast) throws GeneratorException {
+        List<Checklist> checklists = ast.getChecklists();
+        Filenames.check(checklists, ".xml", WRAPPER);
+
+        String author = ast.getAuthor();
+        boolean compact = ast.isCompact();
+        List<XmlWriter> writers = checklists.parallelStream()
+            .map(checklist -> write(checklist, author, compact))
+            .collect(Collectors.toList());
+        writers.forEach(ParallelXmlVisitor::written);
+
+        String title = ast.getProject() != null ? ast.getProject() : "Checklists";
+        XmlWriter wrapper = XmlVisitor.open(outputDir, WRAPPER, title, author, compact);
+        wrapper.startElement("PropertyList");
+        for (Checklist checklist : checklists) {
+            wrapper.startElement("checklist");
+            wrapper.attribute("include", XmlVisitor.filename(checklist));
+            wrapper.endElement();
+        }
+        wrapper.endElement();
+        wrapper.close();
+        written(wrapper);
+    }
+
+    // Other methods
+
+    /*
+     * Writes one checklist file. Runs on a worker thread, so files are
+     * collected and reported by the caller rather than printed here.
+     */
+    private XmlWriter write(final Checklist checklist, final String author,
+            final boolean compact) {
+        List<XmlWriter> writers = new ArrayList<>(1);
+        ChecklistXmlVisitor visitor = new ChecklistXmlVisitor(outputDir, author, compact) {
+            @Override
+            void written(final XmlWriter writer) {
+                writers.add(writer);
+            }
+        };
+        checklist.accept(visitor);
+        return writers.get(0);
+    }
+
+    private static void written(final XmlWriter writer) {
+        System.out.println(writer.describe());
+    }
+
+}
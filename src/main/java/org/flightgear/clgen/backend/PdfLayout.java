@@ -0,0 +1,385 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.backend;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.flightgear.clgen.GeneratorException;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Element;
+import com.lowagie.text.PageSize;
+import com.lowagie.text.Rectangle;
+import com.lowagie.text.pdf.BaseFont;
+import com.lowagie.text.pdf.PdfContentByte;
+
+/**
+ * Lays out checklists on pages of one, two or three columns.
+ * <p>
+ * Text is collected into blocks as the checklists are visited and nothing
+ * is drawn until the whole document is known. Pages are then laid out in a
+ * single pass and drawn directly to the page content, without going
+ * through the layout of the PDF library.
+ * <p>
+ * The font is monospaced, so column widths are measured in characters.
+ * Long item names wrap within the space to the left of the state and long
+ * states wrap within the right half of the column, so that the dot leader
+ * always joins the last line of the item to the first line of the state.
+ * A checklist title is kept with the first check that follows it and a
+ * check is not split across columns unless it is too long for a column.
+ * <p>
+ * One column is laid out on a portrait page in the same size text as the
+ * original layout. Two and three columns are laid out on a landscape page
+ * in smaller text, for use on a kneeboard.
+ *
+ * @author Richard Senior
+ */
+class PdfLayout {
+
+    private static final float[] FONT_SIZES = { 12.0f, 10.0f, 8.0f };
+    private static final float GUTTER = 24.0f;
+
+    private final int columns;
+    private final float size;
+    private final float margin;
+    private final Rectangle pageSize;
+    private final float columnWidth;
+    private final int width;
+    private final BaseFont regular;
+    private final BaseFont bold;
+    private final String[] leaders;
+
+    private String title = null;
+    private final List<Block> blocks = new ArrayList<>();
+
+    /**
+     * Constructs a layout.
+     *
+     * @param columns the number of columns, from one to three
+     * @param margin the margin around each page
+     * @throws GeneratorException if the fonts cannot be created
+     */
+    PdfLayout(final int columns, final float margin) throws GeneratorException {
+        assert columns >= 1 && columns <= FONT_SIZES.length;
+        this.columns = columns;
+        this.margin = margin;
+        size = FONT_SIZES[columns - 1];
+        pageSize = columns == 1 ? PageSize.A4 : PageSize.A4.rotate();
+        try {
+            regular = BaseFont.createFont(BaseFont.COURIER, BaseFont.CP1252, BaseFont.NOT_EMBEDDED);
+            bold = BaseFont.createFont(BaseFont.COURIER_BOLD, BaseFont.CP1252, BaseFont.NOT_EMBEDDED);
+        } catch (DocumentException | IOException e) {
+            throw new GeneratorException(e);
+        }
+        float text = pageSize.getWidth() - margin * 2;
+        columnWidth = (text - GUTTER * (columns - 1)) / columns;
+        width = (int)Math.floor(columnWidth / regular.getWidthPoint(".", size));
+        leaders = new String[width + 1];
+    }
+
+    /**
+     * Sets the title of the document, which is centered across the top of
+     * the first page.
+     *
+     * @param title the title
+     */
+    void title(final String title) {
+        this.title = title.toUpperCase();
+    }
+
+    /**
+     * Adds the title of a checklist.
+     *
+     * @param heading the title of the checklist
+     */
+    void heading(final String heading) {
+        Block block = new Block(true);
+        for (String line : wrap(heading.toUpperCase(), width))
+            block.add(line, true, Element.ALIGN_LEFT, block.lines.isEmpty() ? size * 2 : 0);
+        blocks.add(block);
+    }
+
+    /**
+     * Adds a check.
+     * <p>
+     * A check with no state is written in bold, as a subtitle, and a check
+     * with neither item nor state is written as a blank line.
+     *
+     * @param item the item name, which may be empty
+     * @param state the state name, which may be empty
+     * @param additionalValues additional values, aligned to the right
+     */
+    void check(final String item, final String state, final List<String> additionalValues) {
+        Block block = new Block(false);
+        float spacing = size / 2;
+        if (empty(state))
+            for (String line : wrap(item, width))
+                block.add(line, true, Element.ALIGN_LEFT, spacing);
+        else if (empty(item))
+            for (String line : wrap(state, width))
+                block.add(line, false, Element.ALIGN_LEFT, spacing);
+        else {
+            List<String> states = wrap(state, Math.min(state.length(), width / 2));
+            String first = states.get(0);
+            List<String> items = wrap(item, width - first.length() - 3);
+            for (int i = 0; i < items.size() - 1; ++i)
+                block.add(items.get(i), false, Element.ALIGN_LEFT, spacing);
+            String last = items.get(items.size() - 1);
+            String line = last + " " + dots(width - last.length() - first.length() - 2) + " " + first;
+            block.add(line, false, Element.ALIGN_LEFT, spacing);
+            for (String s : states.subList(1, states.size()))
+                block.add(s, false, Element.ALIGN_RIGHT, 0);
+        }
+        for (String value : additionalValues) {
+            List<String> lines = wrap(value, width);
+            for (int i = 0; i < lines.size(); ++i)
+                block.add(lines.get(i), false, Element.ALIGN_RIGHT, i == 0 ? spacing : 0);
+        }
+        blocks.add(block);
+    }
+
+    /**
+     * Lays out and draws everything added so far. The document must be open
+     * with the page size of this layout.
+     *
+     * @param document the document
+     * @param cb the content of the document
+     */
+    void render(final Document document, final PdfContentByte cb) {
+        List<Page> pages = paginate();
+        for (int i = 0; i < pages.size(); ++i) {
+            if (i > 0)
+                document.newPage();
+            draw(pages.get(i), cb);
+        }
+    }
+
+    // Accessors
+
+    /**
+     * @return the size of each page
+     */
+    Rectangle getPageSize() {
+        return pageSize;
+    }
+
+    // Other methods
+
+    /*
+     * Places every line on a page, column and baseline.
+     */
+    private List<Page> paginate() {
+        Cursor cursor = new Cursor();
+        if (title != null) {
+            float titleSize = size * 7 / 6;
+            float text = pageSize.getWidth() - margin * 2;
+            int titleWidth = (int)Math.floor(text / bold.getWidthPoint(".", titleSize));
+            for (String line : wrap(title, titleWidth)) {
+                cursor.y -= titleSize * 1.5f;
+                cursor.page.lines.add(new Placed(
+                    new Line(line, true, Element.ALIGN_CENTER, 0, titleSize),
+                    pageSize.getWidth() / 2, cursor.y
+                ));
+            }
+            cursor.y -= size;
+            cursor.columnTop = cursor.y;
+            cursor.empty = false;
+        }
+        float leading = size * 1.5f;
+        for (int i = 0; i < blocks.size(); ++i) {
+            Block block = blocks.get(i);
+            float needed = block.height(leading) - block.lines.get(0).spacing;
+            if (block.keepWithNext && i + 1 < blocks.size())
+                needed += blocks.get(i + 1).lines.get(0).spacing + leading;
+            if (!cursor.atTop() && cursor.y - block.lines.get(0).spacing - needed < margin)
+                cursor.nextColumn();
+            for (Line line : block.lines) {
+                float spacing = cursor.atTop() ? 0 : line.spacing;
+                if (cursor.y - spacing - leading < margin) {
+                    cursor.nextColumn();
+                    spacing = 0;
+                }
+                cursor.y -= spacing + leading;
+                float x = margin + cursor.column * (columnWidth + GUTTER);
+                if (line.align == Element.ALIGN_RIGHT)
+                    x += columnWidth;
+                cursor.page.lines.add(new Placed(line, x, cursor.y));
+                cursor.empty = false;
+            }
+        }
+        cursor.pages.add(cursor.page);
+        return cursor.pages;
+    }
+
+    private void draw(final Page page, final PdfContentByte cb) {
+        BaseFont font = null;
+        float fontSize = 0;
+        cb.beginText();
+        for (Placed p : page.lines) {
+            BaseFont f = p.line.bold ? bold : regular;
+            if (f != font || p.line.size != fontSize) {
+                font = f;
+                fontSize = p.line.size;
+                cb.setFontAndSize(font, fontSize);
+            }
+            cb.showTextAligned(p.line.align, p.line.text, p.x, p.y, 0);
+        }
+        cb.endText();
+    }
+
+    private String dots(final int n) {
+        if (n <= 0)
+            return "";
+        if (leaders[n] == null) {
+            char[] dots = new char[n];
+            Arrays.fill(dots, '.');
+            leaders[n] = new String(dots);
+        }
+        return leaders[n];
+    }
+
+    /*
+     * Wraps text at spaces into lines no longer than the width. Words that
+     * are longer than the width are broken.
+     */
+    static List<String> wrap(final String text, final int width) {
+        List<String> lines = new ArrayList<>();
+        StringBuilder line = new StringBuilder();
+        for (String word : text.trim().split("\\s+")) {
+            while (word.length() > width) {
+                if (line.length() > 0) {
+                    lines.add(line.toString());
+                    line.setLength(0);
+                }
+                lines.add(word.substring(0, width));
+                word = word.substring(width);
+            }
+            if (line.length() > 0 && line.length() + 1 + word.length() > width) {
+                lines.add(line.toString());
+                line.setLength(0);
+            }
+            if (line.length() > 0)
+                line.append(' ');
+            line.append(word);
+        }
+        if (line.length() > 0 || lines.isEmpty())
+            lines.add(line.toString());
+        return lines;
+    }
+
+    private static boolean empty(final String s) {
+        return s == null || s.trim().length() == 0;
+    }
+
+    // Layout elements
+
+    private final class Block {
+
+        final List<Line> lines = new ArrayList<>();
+        final boolean keepWithNext;
+
+        Block(final boolean keepWithNext) {
+            this.keepWithNext = keepWithNext;
+        }
+
+        void add(final String text, final boolean bold, final int align, final float spacing) {
+            lines.add(new Line(text, bold, align, spacing, size));
+        }
+
+        float height(final float leading) {
+            float height = 0;
+            for (Line line : lines)
+                height += line.spacing + leading;
+            return height;
+        }
+
+    }
+
+    private static final class Line {
+
+        final String text;
+        final boolean bold;
+        final int align;
+        final float spacing;
+        final float size;
+
+        Line(final String text, final boolean bold, final int align,
+                final float spacing, final float size) {
+            this.text = text;
+            this.bold = bold;
+            this.align = align;
+            this.spacing = spacing;
+            this.size = size;
+        }
+
+    }
+
+    private static final class Placed {
+
+        final Line line;
+        final float x;
+        final float y;
+
+        Placed(final Line line, final float x, final float y) {
+            this.line = line;
+            this.x = x;
+            this.y = y;
+        }
+
+    }
+
+    private static final class Page {
+
+        final List<Placed> lines = new ArrayList<>();
+
+    }
+
+    private final class Cursor {
+
+        final List<Page> pages = new ArrayList<>();
+        Page page = new Page();
+        int column = 0;
+        float columnTop = pageSize.getHeight() - margin;
+        float y = columnTop;
+        boolean empty = true;
+
+        /*
+         * Whether nothing has been placed in the column yet. Spacing before
+         * the first line in a column is dropped, except under the title.
+         */
+        boolean atTop() {
+            return empty;
+        }
+
+        void nextColumn() {
+            if (++column == columns) {
+                pages.add(page);
+                page = new Page();
+                column = 0;
+                columnTop = pageSize.getHeight() - margin;
+            }
+            y = columnTop;
+            empty = true;
+        }
+
+    }
+
+}
@@ -16,8 +16,9 @@
  */
 package org.flightgear.clgen.backend;
 
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Path;
 
 import org.flightgear.clgen.GeneratorException;
@@ -29,125 +30,120 @@ import com.lowagie.text.Document;
 import com.lowagie.text.DocumentException;
 import com.lowagie.text.Element;
 import com.lowagie.text.Font;
-import com.lowagie.text.Paragraph;
 import com.lowagie.text.Phrase;
-import com.lowagie.text.pdf.BaseFont;
+import com.lowagie.text.Rectangle;
 import com.lowagie.text.pdf.ColumnText;
+import com.lowagie.text.pdf.PdfContentByte;
 import com.lowagie.text.pdf.PdfPageEventHelper;
 import com.lowagie.text.pdf.PdfWriter;
 
 /**
  * Creates a PDF representation of the checklists.
+ * <p>
+ * The checklists are collected into a {@link PdfLayout}, which lays them
+ * out in one, two or three columns and draws them when the document is
+ * complete. The PDF is written through a buffer with full compression.
  *
  * @author Richard Senior
  */
 public class PdfVisitor extends AbstractVisitor {
 
-    private static final Font H1 = new Font(Font.COURIER, 14.0f, Font.BOLD);
-    private static final Font H2 = new Font(Font.COURIER, 12.0f, Font.BOLD);
     private static final Font P = new Font(Font.COURIER, 12.0f, Font.NORMAL);
-    private static final Font B = new Font(Font.COURIER, 12.0f, Font.BOLD);
 
     private static final float MARGIN = 70.0f;
+    private static final int BUFFER_SIZE = 65536;
 
-    private final Path filename;
+    private OutputFile out = null;
     private final Document document = new Document();
+    private final PdfLayout layout;
+    private PdfWriter writer;
 
     /**
      * Constructs a PDF visitor with the path to the output directory.
      *
      * @param outputDir the output directory
+     * @param columns the number of columns on each page
      */
-    public PdfVisitor(final Path outputDir) {
+    public PdfVisitor(final Path outputDir, final int columns) {
+        layout = new PdfLayout(columns, MARGIN);
         try {
-            document.setMargins(MARGIN, MARGIN, MARGIN, MARGIN);
-            filename = outputDir.resolve("checklists.pdf");
-            FileOutputStream out = new FileOutputStream(filename.toFile());
-            PdfWriter writer = PdfWriter.getInstance(document, out);
-            writer.setPageEvent(new Footer());
-            document.open();
-        } catch (FileNotFoundException | DocumentException e) {
-            document.close();
+            out = new OutputFile(outputDir.resolve("checklists.pdf"));
+        } catch (IOException e) {
             throw new GeneratorException(e);
         }
+        open(new BufferedOutputStream(out, BUFFER_SIZE), true);
+    }
+
+    /**
+     * Constructs a PDF visitor that renders part of a document to a stream,
+     * without page numbers, so that parts rendered separately can be merged
+     * and numbered afterwards.
+     * <p>
+     * The part is complete when the visitor is closed.
+     *
+     * @param stream the output stream
+     * @param columns the number of columns on each page
+     */
+    PdfVisitor(final OutputStream stream, final int columns) {
+        layout = new PdfLayout(columns, MARGIN);
+        open(stream, false);
     }
 
     @Override
     public void enter(final AbstractSyntaxTree ast) {
-        try {
-            String title = ast.getProject() != null ? ast.getProject() : "Checklists";
-            Paragraph t = new Paragraph(title.toUpperCase(), H1);
-            t.setSpacingAfter(12.0f);
-            t.setAlignment(Element.ALIGN_CENTER);
-            document.add(t);
-        } catch (DocumentException e) {
-            document.close();
-            throw new GeneratorException(e);
-        }
+        layout.title(ast.getProject() != null ? ast.getProject() : "Checklists");
     }
 
     @Override
     public void exit(final AbstractSyntaxTree ast) {
+        close();
+        System.out.println(out.describe());
+    }
+
+    /**
+     * Draws the document and closes it.
+     */
+    void close() {
+        layout.render(document, writer.getDirectContent());
         document.close();
-        System.out.println(filename.toAbsolutePath().normalize().toString());
     }
 
     @Override
     public void enter(final Checklist checklist) {
-        try {
-            Paragraph p = new Paragraph(checklist.getTitle().toUpperCase(), H2);
-            p.setSpacingBefore(24.0f);
-            document.add(p);
-        } catch (DocumentException e) {
-            document.close();
-            throw new GeneratorException(e);
-        }
+        layout.heading(checklist.getTitle());
     }
 
     @Override
     public void enter(final Check check) {
-        try {
-            String i = check.getItem() != null ? nvl(check.getItem().getName()) : "";
-            String s = check.getState() != null ? nvl(check.getState().getName()) : "";
-            String line = String.format("%s %s %s", i, dots(i, s, normalTextWidth() - 2), s);
-            Paragraph p = new Paragraph(line, empty(s) ? B : P);
-            p.setSpacingBefore(6.0f);
-            document.add(p);
-            for (String value : check.getAdditionalValues()) {
-                p = new Paragraph(value, P);
-                p.setSpacingBefore(6.0f);
-                p.setAlignment(Element.ALIGN_RIGHT);
-                document.add(p);
-            }
-        } catch (DocumentException e) {
-            document.close();
-            throw new GeneratorException(e);
-        }
+        String i = check.getItem() != null ? nvl(check.getItem().getName()) : "";
+        String s = check.getState() != null ? nvl(check.getState().getName()) : "";
+        layout.check(i, s, check.getAdditionalValues());
     }
 
     // Other methods
 
-    private int normalTextWidth() {
-        BaseFont b = PdfVisitor.P.getCalculatedBaseFont(false);
-        float w = b.getWidthPoint(".", PdfVisitor.P.getSize());
-        return (int)Math.floor((document.getPageSize().getWidth() - MARGIN * 2) / w);
-    }
-
-    private String dots(final String pre, final String post, int width) {
-        // Empty checks may be used as subtitles or spacers, in which
-        // case no dots are required
-        if (empty(pre) || empty(post))
-            return "";
-        width -= pre.length();
-        width -= post.length();
-        StringBuilder sb = new StringBuilder();
-        while (width-- > 0)
-            sb.append('.');
-        return sb.toString();
+    private void open(final OutputStream stream, final boolean footer) {
+        try {
+            document.setPageSize(layout.getPageSize());
+            document.setMargins(MARGIN, MARGIN, MARGIN, MARGIN);
+            writer = PdfWriter.getInstance(document, stream);
+            writer.setFullCompression();
+            if (footer)
+                writer.setPageEvent(new Footer());
+            document.open();
+        } catch (DocumentException e) {
+            abort();
+            throw new GeneratorException(e);
+        }
     }
 
-    private boolean empty(final String s) {
-        return s == null || s.trim().length() == 0;
+    /*
+     * Closes the document after an error without replacing the output file.
+     */
+    private void abort() {
+        if (out != null)
+            out.abort();
+        document.close();
     }
 
     private String nvl(final String s) {
@@ -160,16 +156,23 @@ public class PdfVisitor extends AbstractVisitor {
 
         @Override
         public void onEndPage(final PdfWriter writer, final Document document) {
-            Phrase pageNo = new Phrase(Integer.toString(document.getPageNumber()), P);
-            float x = document.getPageSize().getWidth() / 2;
-            float y = MARGIN / 2;
-            ColumnText.showTextAligned(
-                writer.getDirectContent(),
-                Element.ALIGN_CENTER,
-                pageNo, x, y, 0f
-            );
+            pageNumber(writer.getDirectContent(), document.getPageNumber(), document.getPageSize());
         }
 
     }
 
+    /**
+     * Writes a page number centered at the foot of a page.
+     *
+     * @param cb the content of the page
+     * @param pageNumber the page number
+     * @param pageSize the size of the page
+     */
+    static void pageNumber(final PdfContentByte cb, final int pageNumber, final Rectangle pageSize) {
+        Phrase pageNo = new Phrase(Integer.toString(pageNumber), P);
+        float x = pageSize.getWidth() / 2;
+        float y = MARGIN / 2;
+        ColumnText.showTextAligned(cb, Element.ALIGN_CENTER, pageNo, x, y, 0f);
+    }
+
 }
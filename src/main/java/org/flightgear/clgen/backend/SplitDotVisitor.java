@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.backend;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.flightgear.clgen.GeneratorException;
+import org.flightgear.clgen.ast.AbstractSyntaxTree;
+import org.flightgear.clgen.ast.AbstractSyntaxTree.Graph;
+import org.flightgear.clgen.ast.Checklist;
+
+/**
+ * Creates a separate Graphviz DOT file for each checklist.
+ * <p>
+ * Each checklist is written to a file named after the checklist, in the
+ * same way as the XML files in a wrapper, so that large projects can be
+ * laid out one checklist at a time. The files are written in parallel.
+ * <p>
+ * With the clusters layout, the checklists are also written to a summary
+ * graph with one cluster subgraph per checklist. Without it, a summary left
+ * by an earlier run is removed so that it does not go stale.
+ *
+ * @author Richard Senior
+ */
+public class SplitDotVisitor extends AbstractVisitor {
+
+    private static final String SUMMARY = "checklists.dot";
+
+    private final Path outputDir;
+
+    /**
+     * Constructs a split DOT visitor with the path to the output directory.
+     *
+     * @param outputDir the path to the output directory
+     */
+    public SplitDotVisitor(final Path outputDir) {
+        this.outputDir = outputDir;
+    }
+
+    @Override
+    public void exit(final AbstractSyntaxTree ast) throws GeneratorException {
+        List<Checklist> checklists = ast.getChecklists();
+        boolean clusters = ast.getGraph() == Graph.CLUSTERS;
+        if (clusters)
+            Filenames.check(checklists, ".dot", SUMMARY);
+        else {
+            Filenames.check(checklists, ".dot");
+            removeSummary(checklists);
+        }
+        String[] hues = DotWriter.hues(checklists.size());
+
+        List<OutputFile> files = IntStream.range(0, checklists.size() + (clusters ? 1 : 0))
+            .parallel()
+            .mapToObj(i -> i < checklists.size()
+                ? write(checklists.get(i), hues[i])
+                : summary(ast, hues))
+            .collect(Collectors.toList());
+        files.forEach(file -> System.out.println(file.describe()));
+    }
+
+    // Other methods
+
+    /*
+     * Removes a graph of all the checklists left by an earlier run with the
+     * single or clusters layout, unless a checklist is written in its place.
+     */
+    private void removeSummary(final List<Checklist> checklists) throws GeneratorException {
+        for (Checklist checklist : checklists)
+            if (SUMMARY.equals(XmlVisitor.basename(checklist) + ".dot"))
+                return;
+        Path summary = outputDir.resolve(SUMMARY);
+        try {
+            if (Files.deleteIfExists(summary))
+                System.out.format("%s (removed)\n", summary.toAbsolutePath().normalize());
+        } catch (IOException e) {
+            throw new GeneratorException(e);
+        }
+    }
+
+    private OutputFile write(final Checklist checklist, final String hue) {
+        DotWriter dot = new DotWriter(outputDir.resolve(XmlVisitor.basename(checklist) + ".dot"));
+        dot.header(checklist.getTitle());
+        dot.title(checklist, hue);
+        dot.checkDefaults();
+        dot.nodes(checklist, 0, hue);
+        dot.edges(checklist, 0);
+        dot.close();
+        return dot.getFile();
+    }
+
+    /*
+     * Writes the summary graph. Node ids run on from one cluster to the next
+     * because ids are global to the graph.
+     */
+    private OutputFile summary(final AbstractSyntaxTree ast, final String[] hues) {
+        DotWriter dot = new DotWriter(outputDir.resolve(SUMMARY));
+        dot.header(ast.getProject());
+        int first = 0;
+        for (int i = 0; i < ast.getChecklists().size(); ++i) {
+            Checklist checklist = ast.getChecklists().get(i);
+            dot.startCluster(i, hues[i]);
+            dot.title(checklist, hues[i]);
+            dot.checkDefaults();
+            dot.nodes(checklist, first, hues[i]);
+            first = dot.edges(checklist, first);
+            dot.endCluster();
+        }
+        dot.close();
+        return dot.getFile();
+    }
+
+}
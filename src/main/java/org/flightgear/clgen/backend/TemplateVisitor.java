@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.backend;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Calendar;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.runtime.RuntimeInstance;
+import org.apache.velocity.runtime.parser.ParseException;
+import org.flightgear.clgen.CLGenProperties;
+import org.flightgear.clgen.GeneratorException;
+import org.flightgear.clgen.ast.AbstractSyntaxTree;
+
+/**
+ * Renders the checklists through user-defined Velocity templates.
+ * <p>
+ * Each template declared in the project definition is rendered once with
+ * the whole abstract syntax tree in its context, to a file with the same
+ * name as the template but without the .vm extension. Templates are found
+ * relative to the output directory.
+ * <p>
+ * The following references are available to templates:
+ * <ul>
+ * <li>ast - the abstract syntax tree
+ * <li>project - the project title, which may be null
+ * <li>author - the author, which may be null
+ * <li>checklists - the list of checklists
+ * <li>items - the map of items, keyed by name
+ * <li>year - the current year
+ * <li>version - the CLGen version
+ * </ul>
+ * Compiled templates are cached for the life of the process and only
+ * parsed again if the template file is modified.
+ *
+ * @author Richard Senior
+ */
+public class TemplateVisitor extends AbstractVisitor {
+
+    private static final Map<Path, CompiledTemplate> cache = new ConcurrentHashMap<>();
+
+    private final Path outputDir;
+
+    /**
+     * Constructs a template visitor with the path to the output directory.
+     *
+     * @param outputDir the path to the output directory
+     */
+    public TemplateVisitor(final Path outputDir) {
+        this.outputDir = outputDir;
+    }
+
+    @Override
+    public void enter(final AbstractSyntaxTree ast) throws GeneratorException {
+        if (ast.getTemplates().isEmpty())
+            return;
+        VelocityContext ctx = velocityContext(ast);
+        for (String name : ast.getTemplates()) {
+            Template template = template(outputDir.resolve(name));
+            Path path = outputDir.resolve(name.substring(0, name.length() - 3));
+            render(template, new VelocityContext(ctx), path);
+        }
+    }
+
+    // Other methods
+
+    private void render(final Template template, final VelocityContext ctx, final Path path)
+            throws GeneratorException {
+        OutputFile out = null;
+        try {
+            out = new OutputFile(path);
+            Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            template.merge(ctx, w);
+            w.close();
+            System.out.println(out.describe());
+        } catch (IOException | VelocityException e) {
+            if (out != null)
+                out.abort();
+            String message = String.format("Failed to write output file: %s", path.getFileName());
+            throw new GeneratorException(message, e);
+        }
+    }
+
+    private VelocityContext velocityContext(final AbstractSyntaxTree ast) {
+        CLGenProperties properties = CLGenProperties.getInstance();
+        VelocityContext ctx = new VelocityContext();
+        ctx.put("ast", ast);
+        ctx.put("project", ast.getProject());
+        ctx.put("author", ast.getAuthor());
+        ctx.put("checklists", ast.getChecklists());
+        ctx.put("items", ast.getItems());
+        ctx.put("year", Integer.toString(Calendar.getInstance().get(Calendar.YEAR)));
+        ctx.put("version", properties.getVersion());
+        return ctx;
+    }
+
+    /*
+     * Gets a compiled template from the cache, compiling it if it is not
+     * cached or the file has been modified since it was compiled.
+     */
+    private static Template template(final Path path) throws GeneratorException {
+        Path key = path.toAbsolutePath().normalize();
+        try {
+            FileTime modified = Files.getLastModifiedTime(key);
+            CompiledTemplate cached = cache.get(key);
+            if (cached != null && cached.modified.equals(modified))
+                return cached.template;
+            Template template = compile(key);
+            cache.put(key, new CompiledTemplate(modified, template));
+            return template;
+        } catch (IOException e) {
+            String message = String.format("Cannot read template: %s", path);
+            throw new GeneratorException(message, e);
+        } catch (ParseException | VelocityException e) {
+            String message = String.format("Invalid template %s: %s", path, e.getMessage());
+            throw new GeneratorException(message, e);
+        }
+    }
+
+    private static Template compile(final Path path) throws IOException, ParseException {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            Template template = new Template();
+            template.setName(path.toString());
+            template.setRuntimeServices(Engine.INSTANCE);
+            template.setData(Engine.INSTANCE.parse(reader, path.toString()));
+            template.initDocument();
+            return template;
+        }
+    }
+
+    private static final class CompiledTemplate {
+
+        final FileTime modified;
+        final Template template;
+
+        CompiledTemplate(final FileTime modified, final Template template) {
+            this.modified = modified;
+            this.template = template;
+        }
+
+    }
+
+    /*
+     * Velocity runtime, initialized on first use. Templates included with
+     * #parse are found relative to the working directory.
+     */
+    private static final class Engine {
+
+        static final RuntimeInstance INSTANCE = new RuntimeInstance();
+
+        static {
+            Properties p = new Properties();
+            p.put("runtime.log.logsystem.class", "org.apache.velocity.runtime.log.NullLogChute");
+            INSTANCE.init(p);
+        }
+
+    }
+
+}
@@ -16,17 +16,34 @@
  */
 package org.flightgear.clgen.backend;
 
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Post processing of XML files.
+ * <p>
+ * Inserts line breaks between a comment and a following tag, and after each
+ * occurrence of a registered break pattern. All patterns are matched in a
+ * single pass by an Aho-Corasick automaton, so the post-processor can be
+ * used as a streaming filter while the XML is being written.
  *
  * @author Richard Senior
  */
 public class XmlPostProcessor {
 
+    private static final String COMMENT_END = "-->";
+
     private String xml;
     private final List<String> breakPatterns = new ArrayList<>();
 
@@ -45,13 +62,19 @@ public class XmlPostProcessor {
      * @return the processed XML
      */
     public String getXml() {
-        xml = xml.replaceAll("--><", "-->\n<");
-        breakPatterns.forEach(pattern -> xml = xml.replaceAll(pattern, pattern + "\n"));
-        return xml;
+        StringWriter sw = new StringWriter(xml.length() + 64);
+        try (Writer w = filter(sw)) {
+            w.write(xml);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sw.toString();
     }
 
     /**
      * Adds patterns after which line breaks will be generated.
+     * <p>
+     * Patterns are matched literally.
      *
      * @param patterns a variable argument list of patterns
      */
@@ -59,4 +82,190 @@ public class XmlPostProcessor {
         Collections.addAll(breakPatterns, patterns);
     }
 
+    /**
+     * Creates a writer that post-processes XML as it is written to another
+     * writer.
+     * <p>
+     * Break patterns added after the filter is created do not apply to it.
+     *
+     * @param out the writer that receives the processed XML
+     * @return a filtering writer
+     */
+    public Writer filter(final Writer out) {
+        List<String> patterns = new ArrayList<>();
+        patterns.add(COMMENT_END);
+        patterns.addAll(breakPatterns);
+        return new BreakFilter(out, new Automaton(patterns));
+    }
+
+    // Automaton
+
+    /*
+     * Deterministic Aho-Corasick automaton over the characters used in the
+     * patterns. Characters that do not appear in any pattern share a single
+     * column that always leads back to the start state.
+     */
+    private static final class Automaton {
+
+        private final int[] lengths;
+        private final int[] ascii = new int[128];
+        private final Map<Character, Integer> others = new HashMap<>();
+        private final int[][] delta;
+        private final int[][] matches;
+
+        Automaton(final List<String> patterns) {
+            lengths = new int[patterns.size()];
+            Arrays.fill(ascii, -1);
+            int symbols = 0;
+            for (String pattern : patterns)
+                for (char c : pattern.toCharArray())
+                    if (symbol(c) < 0) {
+                        if (c < ascii.length)
+                            ascii[c] = symbols++;
+                        else
+                            others.put(c, symbols++);
+                    }
+
+            // Trie
+            List<int[]> next = new ArrayList<>();
+            List<List<Integer>> out = new ArrayList<>();
+            next.add(newRow(symbols));
+            out.add(new ArrayList<>());
+            for (int p = 0; p < patterns.size(); ++p) {
+                String pattern = patterns.get(p);
+                lengths[p] = pattern.length();
+                int state = 0;
+                for (char c : pattern.toCharArray()) {
+                    int a = symbol(c);
+                    if (next.get(state)[a] < 0) {
+                        next.get(state)[a] = next.size();
+                        next.add(newRow(symbols));
+                        out.add(new ArrayList<>());
+                    }
+                    state = next.get(state)[a];
+                }
+                if (pattern.length() > 0)
+                    out.get(state).add(p);
+            }
+
+            // Failure links, folded into a complete transition table
+            int[] fail = new int[next.size()];
+            Deque<Integer> queue = new ArrayDeque<>();
+            for (int a = 0; a < symbols; ++a) {
+                int s = next.get(0)[a];
+                if (s < 0)
+                    next.get(0)[a] = 0;
+                else
+                    queue.add(s);
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.remove();
+                out.get(state).addAll(out.get(fail[state]));
+                for (int a = 0; a < symbols; ++a) {
+                    int s = next.get(state)[a];
+                    if (s < 0)
+                        next.get(state)[a] = next.get(fail[state])[a];
+                    else {
+                        fail[s] = next.get(fail[state])[a];
+                        queue.add(s);
+                    }
+                }
+            }
+            delta = next.toArray(new int[next.size()][]);
+            matches = new int[out.size()][];
+            for (int i = 0; i < out.size(); ++i)
+                matches[i] = out.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        int step(final int state, final char c) {
+            int a = symbol(c);
+            return a < 0 ? 0 : delta[state][a];
+        }
+
+        private int symbol(final char c) {
+            if (c < ascii.length)
+                return ascii[c];
+            Integer a = others.get(c);
+            return a != null ? a : -1;
+        }
+
+        private static int[] newRow(final int symbols) {
+            int[] row = new int[symbols];
+            Arrays.fill(row, -1);
+            return row;
+        }
+
+    }
+
+    // Filter
+
+    /*
+     * Writer that runs the automaton over everything written to it. Matches
+     * of the same pattern do not overlap, consistent with a replace-all of
+     * each pattern in turn. A comment end only causes a break if the next
+     * character starts a tag.
+     */
+    private static final class BreakFilter extends FilterWriter {
+
+        private final Automaton automaton;
+        private final long[] lastEnd;
+        private int state = 0;
+        private long position = 0;
+        private boolean commentEnded = false;
+
+        BreakFilter(final Writer out, final Automaton automaton) {
+            super(out);
+            this.automaton = automaton;
+            lastEnd = new long[automaton.lengths.length];
+        }
+
+        @Override
+        public void write(final int c) throws IOException {
+            write(new char[] { (char)c }, 0, 1);
+        }
+
+        @Override
+        public void write(final String str, final int off, final int len) throws IOException {
+            char[] chars = new char[len];
+            str.getChars(off, off + len, chars, 0);
+            write(chars, 0, len);
+        }
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) throws IOException {
+            int start = off;
+            for (int i = off; i < off + len; ++i) {
+                char c = cbuf[i];
+                if (commentEnded) {
+                    commentEnded = false;
+                    if (c == '<') {
+                        out.write(cbuf, start, i - start);
+                        out.write('\n');
+                        start = i;
+                    }
+                }
+                ++position;
+                state = automaton.step(state, c);
+                int breaks = 0;
+                for (int p : automaton.matches[state]) {
+                    if (position - automaton.lengths[p] < lastEnd[p])
+                        continue;
+                    lastEnd[p] = position;
+                    if (p == 0)
+                        commentEnded = true;
+                    else
+                        ++breaks;
+                }
+                if (breaks > 0) {
+                    out.write(cbuf, start, i + 1 - start);
+                    while (breaks-- > 0)
+                        out.write('\n');
+                    start = i + 1;
+                }
+            }
+            out.write(cbuf, start, off + len - start);
+        }
+
+    }
+
 }
@@ -16,24 +16,10 @@
  */
 package org.flightgear.clgen.backend;
 
-import java.io.IOException;
-import java.io.StringWriter;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayDeque;
 import java.util.Deque;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-
 import org.flightgear.clgen.GeneratorException;
 import org.flightgear.clgen.ast.AbstractSyntaxTree;
 import org.flightgear.clgen.ast.Check;
@@ -51,145 +37,113 @@ import org.flightgear.clgen.ast.conditions.Terminal;
 import org.flightgear.clgen.ast.conditions.UnaryCondition;
 import org.flightgear.clgen.symbol.Symbol;
 import org.flightgear.clgen.symbol.Type;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
 /**
  * XML Visitor.
  * <p>
  * This is the workhorse of the CLGen back-end. It visits the nodes of the
- * abstract checklist representation and creates a DOM of the various XML
- * output documents before writing them to disk.
+ * abstract checklist representation and streams the various XML output
+ * documents to disk as it goes, so memory use does not depend on the size
+ * of the checklists.
  *
  * @author Richard Senior
  */
 public class XmlVisitor extends AbstractVisitor {
 
-    private DocumentBuilder documentBuilder;
-    Document document;
+    XmlWriter xml;
     boolean multiPage = false;
+    boolean compact = false;
 
-    final Deque<Element> elements = new ArrayDeque<>();
     private final Deque<BinaryCondition> binaryConditions = new ArrayDeque<>();
 
-    private Transformer transformer;
     private final Path outputDir;
 
     /**
      * Constructs an XML visitor with the path to an output directory.
      *
      * @param outputDir the path to the output directory
-     * @throws GeneratorException if the visitor could not be created
      */
-    public XmlVisitor(final Path outputDir) throws GeneratorException {
+    public XmlVisitor(final Path outputDir) {
         this.outputDir = outputDir;
-        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-        try {
-            documentBuilder = dbf.newDocumentBuilder();
-            TransformerFactory tf = TransformerFactory.newInstance();
-            Transformer t = tf.newTransformer();
-            t.setOutputProperty(OutputKeys.INDENT, "yes");
-            t.setOutputProperty(
-                "{http://xml.apache.org/xslt}indent-amount",
-                "2"
-            );
-            transformer = t;
-        } catch (TransformerConfigurationException | ParserConfigurationException e) {
-            throw new GeneratorException("Could not create XmlVisitor", e);
-        }
     }
 
     @Override
     public void enter(final AbstractSyntaxTree ast) {
         String title = ast.getProject() != null ? ast.getProject() : "Checklists";
-        document = open(title, ast.getAuthor());
-        Element e = document.createElement("PropertyList");
-        document.appendChild(e);
-        elements.push(e);
+        compact = ast.isCompact();
+        xml = open("checklists.xml", title, ast.getAuthor());
+        xml.startElement("PropertyList");
     }
 
     @Override
     public void exit(final AbstractSyntaxTree ast) throws GeneratorException {
-        elements.pop();
-        assert elements.isEmpty();
-        write(document, "checklists.xml", new XmlPostProcessor());
+        xml.endElement();
+        close(xml);
     }
 
     @Override
     public void enter(final Checklist checklist) throws GeneratorException {
         multiPage = checklist.getPages().size() > 1;
-        Element e = document.createElement("checklist");
-        appendText(e, "title", checklist.getTitle());
-        elements.peek().appendChild(e);
-        elements.push(e);
+        xml.startElement("checklist");
+        appendText("title", checklist.getTitle());
     }
 
     @Override
     public void exit(final Checklist checklist) {
-        elements.pop();
+        xml.endElement();
     }
 
     @Override
     public void enter(final Page page) {
-        if (multiPage) {
-            Element e = document.createElement("page");
-            elements.peek().appendChild(e);
-            elements.push(e);
-        }
+        if (multiPage)
+            xml.startElement("page");
     }
 
     @Override
     public void exit(final Page page) {
         if (multiPage)
-            elements.pop();
+            xml.endElement();
     }
 
     @Override
     public void enter(final Check check) {
-        Element e = document.createElement("item");
+        xml.startElement("item");
         if (check.getItem() != null) {
-            appendText(e, "name", check.getItem().getName());
+            appendText("name", check.getItem().getName());
             if (check.getState() != null) {
-                appendText(e, "value", check.getState().getName());
+                appendText("value", check.getState().getName());
                 for (String additionalValue : check.getAdditionalValues())
-                    appendText(e, "value", additionalValue);
+                    appendText("value", additionalValue);
             }
         } else // Spacer
-            appendText(e, "name", "");
-        elements.peek().appendChild(e);
-        elements.push(e);
+            appendText("name", "");
     }
 
     @Override
     public void exit(final Check check) {
-        elements.pop();
+        xml.endElement();
     }
 
     @Override
     public void enter(final Condition condition) {
-        Element e = document.createElement("condition");
-        elements.peek().appendChild(e);
-        elements.push(e);
+        xml.startElement("condition");
     }
 
     @Override
     public void exit(final Condition condition) {
-        elements.pop();
+        xml.endElement();
     }
 
     @Override
     public void enter(final BinaryCondition condition) {
         /*
-         * To optimize the XML output, operator elements are only pushed onto the
-         * stack if the parent condition differs from the current condition. This
+         * To optimize the XML output, operator elements are only written if
+         * the parent condition differs from the current condition. This
          * simplifies conditional structures based on parse trees built from
          * expressions like a && b && c -> ((a && b) && c)
          */
-        if (rootCondition(condition)) {
-            Element e = document.createElement(operatorTag(condition.getOperator()));
-            elements.peek().appendChild(e);
-            elements.push(e);
-        }
+        if (rootCondition(condition))
+            xml.startElement(operatorTag(condition.getOperator()));
         binaryConditions.push(condition);
     }
 
@@ -197,127 +151,115 @@ public class XmlVisitor extends AbstractVisitor {
     public void exit(final BinaryCondition condition) {
         binaryConditions.pop();
         if (rootCondition(condition))
-            elements.pop();
+            xml.endElement();
     }
 
     @Override
     public void enter(final UnaryCondition condition) {
-        if (condition.getOperator() != null) {
-            Element e = document.createElement(operatorTag(condition.getOperator()));
-            elements.peek().appendChild(e);
-            elements.push(e);
-        }
+        if (condition.getOperator() != null)
+            xml.startElement(operatorTag(condition.getOperator()));
     }
 
     @Override
     public void exit(final UnaryCondition condition) {
         if (condition.getOperator() != null)
-            elements.pop();
+            xml.endElement();
     }
 
     @Override
     public void enter(final Terminal terminal) {
-        appendTerminal(elements.peek(), terminal);
+        appendTerminal(terminal);
     }
 
     @Override
     public void enter(final ValueBinding binding) {
-        Element e = document.createElement("binding");
-        appendText(e, "command", "property-assign");
-        appendText(e, "property", binding.getSymbol().getExpansion());
-        appendText(e, "value", binding.getValue(), binding.getSymbol().getType());
-        elements.peek().appendChild(e);
-        elements.push(e);
+        xml.startElement("binding");
+        appendText("command", "property-assign");
+        appendText("property", binding.getSymbol().getExpansion());
+        appendText("value", binding.getValue(), binding.getSymbol().getType());
     }
 
     @Override
     public void exit(final ValueBinding binding) {
-        elements.pop();
+        xml.endElement();
     }
 
     @Override
     public void enter(final CommandBinding binding) {
-        Element e = document.createElement("binding");
-        appendText(e, "command", binding.getCommand());
+        xml.startElement("binding");
+        appendText("command", binding.getCommand());
         for (String name : binding.getParams().keySet()) {
             Object value = binding.getParams().get(name);
             if (value instanceof Symbol) {
                 Symbol symbol = (Symbol)value;
-                appendText(e, name, symbol.getExpansion());
+                appendText(name, symbol.getExpansion());
             } else if (value instanceof String)
-                appendText(e, name, value, Type.STRING);
+                appendText(name, value, Type.STRING);
             else if (value instanceof Boolean)
-                appendText(e, name, value, Type.BOOL);
+                appendText(name, value, Type.BOOL);
             else
-                appendText(e, name, value);
+                appendText(name, value);
         }
-        elements.peek().appendChild(e);
-        elements.push(e);
     }
 
     @Override
     public void exit(final CommandBinding binding) {
-        elements.pop();
+        xml.endElement();
     }
 
     @Override
     public void enter(final PropertyBinding binding) {
-        Element e = document.createElement("binding");
-        appendText(e, "command", "property-assign");
-        appendText(e, "property", binding.getLval());
-        appendText(e, "property", binding.getRval());
-        elements.peek().appendChild(e);
-        elements.push(e);
+        xml.startElement("binding");
+        appendText("command", "property-assign");
+        appendText("property", binding.getLval());
+        appendText("property", binding.getRval());
     }
 
     @Override
     public void exit(final PropertyBinding binding) {
-        elements.pop();
+        xml.endElement();
     }
 
     @Override
     public void enter(final Marker marker) {
-        Element e = document.createElement("marker");
-        appendText(e, "x-m", Double.toString(marker.getCoordinate().getX()));
-        appendText(e, "y-m", Double.toString(marker.getCoordinate().getY()));
-        appendText(e, "z-m", Double.toString(marker.getCoordinate().getZ()));
-        appendText(e, "scale", Double.toString(marker.getScale()));
-        elements.peek().appendChild(e);
+        xml.startElement("marker");
+        appendText("x-m", Double.toString(marker.getCoordinate().getX()));
+        appendText("y-m", Double.toString(marker.getCoordinate().getY()));
+        appendText("z-m", Double.toString(marker.getCoordinate().getZ()));
+        appendText("scale", Double.toString(marker.getScale()));
+        xml.endElement();
     }
 
     // Other methods
 
-    private void appendTerminal(final Element parent, final Terminal terminal) {
+    private void appendTerminal(final Terminal terminal) {
         if (terminal.getValue() instanceof Symbol) {
             Symbol symbol = (Symbol)terminal.getValue();
-            appendText(parent, "property", symbol.getExpansion());
+            appendText("property", symbol.getExpansion());
         } else if (terminal.getValue() instanceof String)
-            appendText(parent, "value", terminal.getValue(), Type.STRING);
+            appendText("value", terminal.getValue(), Type.STRING);
         else if (terminal.getValue() instanceof Boolean)
-            appendText(parent, "value", terminal.getValue(), Type.BOOL);
+            appendText("value", terminal.getValue(), Type.BOOL);
         else
-            appendText(parent, "value", terminal.getValue());
+            appendText("value", terminal.getValue());
+    }
+
+    private void appendText(final String node, final Object value, final Type type) {
+        xml.textElement(node, value.toString(), typeAttributeForType(type));
     }
 
-    private void appendText(final Element parent, final String node,
-                            final Object value, final Type type) {
-        Element e = document.createElement(node);
-        parent.appendChild(e);
-        String typeAttribute = typeAttributeForType(type);
-        if (typeAttribute != null)
-            e.setAttribute("type", typeAttribute);
-        e.appendChild(document.createTextNode(value.toString()));
+    void appendText(final String node, final Object value) {
+        appendText(node, value, Type.NULL);
     }
 
-    void appendText(final Element parent, final String node, final Object value) {
-        appendText(parent, node, value, Type.NULL);
+    static String filename(final Checklist checklist) {
+        return basename(checklist) + ".xml";
     }
 
-    String filename(final Checklist checklist) {
-        String s = checklist.getTitle()
+    static String basename(final Checklist checklist) {
+        return checklist.getTitle()
             .toLowerCase()
             .replaceAll(" ", "-");
-        return s + ".xml";
     }
 
     private boolean rootCondition(final BinaryCondition condition) {
@@ -325,14 +267,31 @@ public class XmlVisitor extends AbstractVisitor {
                 condition.getOperator() != binaryConditions.peek().getOperator();
     }
 
-    Document open(final String title, final String author) {
-        Document document = documentBuilder.newDocument();
+    XmlWriter open(final String filename, final String title, final String author) {
+        return open(outputDir, filename, title, author, compact);
+    }
+
+    static XmlWriter open(final Path outputDir, final String filename,
+            final String title, final String author, final boolean compact) {
+        Path path = outputDir.resolve(filename);
+        XmlWriter writer = compact
+            ? new XmlWriter(path, null, true)
+            : new XmlWriter(path, new XmlPostProcessor(), false);
         License license = new License("gpl2");
         license.setAuthor(author);
         license.setTitle(title);
         if (license.getText() != null)
-            document.appendChild(document.createComment("\n" + license.getText()));
-        return document;
+            writer.comment("\n" + license.getText());
+        return writer;
+    }
+
+    void close(final XmlWriter writer) throws GeneratorException {
+        writer.close();
+        written(writer);
+    }
+
+    void written(final XmlWriter writer) {
+        System.out.println(writer.describe());
     }
 
     private String operatorTag(final Operator op) {
@@ -359,22 +318,4 @@ public class XmlVisitor extends AbstractVisitor {
         return null;
     }
 
-    void write(final Document document, final String filename,
-               final XmlPostProcessor postProcessor) throws GeneratorException {
-        Path p = outputDir.resolve(filename);
-        StringWriter sw = new StringWriter();
-        try {
-            transformer.transform(
-                new DOMSource(document),
-                new StreamResult(sw)
-            );
-            postProcessor.setXml(sw.toString());
-            Files.write(p, postProcessor.getXml().getBytes());
-            System.out.println(p.toAbsolutePath().normalize().toString());
-        } catch (TransformerException | IOException e) {
-            String message = String.format("Failed to write output file: %s", filename);
-            throw new GeneratorException(message, e);
-        }
-    }
-
 }
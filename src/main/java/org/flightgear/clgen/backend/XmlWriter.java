@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.backend;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.flightgear.clgen.GeneratorException;
+
+/**
+ * Streaming XML writer with indentation.
+ * <p>
+ * Wraps a StAX stream writer and lays out elements in the same way as an
+ * indenting transformer would: one element per line, nested elements
+ * indented by two spaces, elements with text content on a single line and
+ * elements with no content written as empty elements.
+ * <p>
+ * The start tag of each element is held back until its first child or its
+ * end tag is written, so that empty elements can be detected without
+ * building a document tree.
+ * <p>
+ * In compact mode, no whitespace is written between elements and comments
+ * are trimmed. The writer keeps count of the bytes this saves compared with
+ * the indented layout.
+ *
+ * @author Richard Senior
+ */
+class XmlWriter implements AutoCloseable {
+
+    private static final XMLOutputFactory factory = XMLOutputFactory.newInstance();
+
+    private static final String DECLARATION =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>";
+
+    private final OutputFile file;
+    private final Writer out;
+    private final XMLStreamWriter xml;
+    private final boolean compact;
+
+    private final List<String> indents = new ArrayList<>();
+    private final List<String> attributes = new ArrayList<>();
+    private String pending = null;
+    private int depth = 0;
+    private long saved = 0;
+
+    /**
+     * Constructs an XML writer that writes a new document to a file.
+     * <p>
+     * The XML declaration is written immediately. Everything written passes
+     * through the post-processor on its way to the file, which is only
+     * replaced if its content changes.
+     *
+     * @param path the path of the output file
+     * @param postProcessor the post-processor, or null for no post-processing
+     * @param compact true to write without indentation
+     * @throws GeneratorException if the file cannot be opened
+     */
+    XmlWriter(final Path path, final XmlPostProcessor postProcessor, final boolean compact)
+            throws GeneratorException {
+        this.compact = compact;
+        try {
+            file = new OutputFile(path);
+        } catch (IOException e) {
+            throw failed(path, e);
+        }
+        try {
+            Writer w = new BufferedWriter(new OutputStreamWriter(file, StandardCharsets.UTF_8));
+            out = postProcessor != null ? postProcessor.filter(w) : w;
+            out.write(DECLARATION);
+            xml = factory.createXMLStreamWriter(out);
+            newline();
+        } catch (IOException | XMLStreamException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * Writes a comment on its own line.
+     * <p>
+     * In compact mode, leading and trailing whitespace is removed from the
+     * comment text.
+     *
+     * @param text the text of the comment
+     * @throws GeneratorException if the comment cannot be written
+     */
+    void comment(final String text) throws GeneratorException {
+        try {
+            openPending();
+            if (depth > 0)
+                indent(depth);
+            if (compact) {
+                String trimmed = text.trim();
+                saved += text.length() - trimmed.length();
+                xml.writeComment(trimmed);
+            } else
+                xml.writeComment(text);
+            if (depth == 0)
+                newline();
+        } catch (XMLStreamException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * Starts an element.
+     * <p>
+     * Attributes may be added with {@link #attribute(String, String)} until
+     * the next element, text or end tag is written.
+     *
+     * @param name the element name
+     * @throws GeneratorException if the element cannot be written
+     */
+    void startElement(final String name) throws GeneratorException {
+        try {
+            openPending();
+            if (depth > 0)
+                indent(depth);
+            pending = name;
+            ++depth;
+        } catch (XMLStreamException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * Adds an attribute to the element most recently started.
+     *
+     * @param name the attribute name
+     * @param value the attribute value
+     */
+    void attribute(final String name, final String value) {
+        assert pending != null;
+        attributes.add(name);
+        attributes.add(value);
+    }
+
+    /**
+     * Ends the element most recently started.
+     *
+     * @throws GeneratorException if the element cannot be written
+     */
+    void endElement() throws GeneratorException {
+        try {
+            --depth;
+            if (pending != null) {
+                xml.writeEmptyElement(pending);
+                writeAttributes();
+                pending = null;
+            } else {
+                indent(depth);
+                xml.writeEndElement();
+            }
+        } catch (XMLStreamException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * Writes an element with text content on a single line.
+     * <p>
+     * An empty string is written as an empty element.
+     *
+     * @param name the element name
+     * @param text the text content
+     * @param type the type attribute, or null for no type attribute
+     * @throws GeneratorException if the element cannot be written
+     */
+    void textElement(final String name, final String text, final String type)
+            throws GeneratorException {
+        try {
+            openPending();
+            indent(depth);
+            if (text.isEmpty())
+                xml.writeEmptyElement(name);
+            else
+                xml.writeStartElement(name);
+            if (type != null)
+                xml.writeAttribute("type", type);
+            if (!text.isEmpty()) {
+                characters(text);
+                xml.writeEndElement();
+            }
+        } catch (XMLStreamException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * Ends the document and closes the output file.
+     * <p>
+     * If the writer fails before it is closed, the output file is abandoned
+     * and any existing file is left as it was.
+     *
+     * @throws GeneratorException if the document cannot be completed
+     */
+    @Override
+    public void close() throws GeneratorException {
+        assert depth == 0;
+        try {
+            xml.writeCharacters("\n");
+            xml.close();
+            out.close();
+        } catch (IOException | XMLStreamException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * Describes the output file as it is reported to the user. In compact
+     * mode, this includes the number of bytes saved.
+     *
+     * @return the description
+     */
+    String describe() {
+        if (!compact)
+            return file.describe();
+        long length = file.getLength();
+        return file.describe(String.format("compact, %d bytes saved, %.0f%%",
+            saved, 100.0 * saved / (length + saved)
+        ));
+    }
+
+    /**
+     * @return the output file
+     */
+    OutputFile getFile() {
+        return file;
+    }
+
+    // Other methods
+
+    private void openPending() throws XMLStreamException {
+        if (pending == null)
+            return;
+        xml.writeStartElement(pending);
+        writeAttributes();
+        pending = null;
+    }
+
+    private void writeAttributes() throws XMLStreamException {
+        for (int i = 0; i < attributes.size(); i += 2)
+            xml.writeAttribute(attributes.get(i), attributes.get(i + 1));
+        attributes.clear();
+    }
+
+    /*
+     * Writes text content. The stream writer escapes markup characters but
+     * carriage returns must be written as character references to survive
+     * end-of-line normalization when the file is parsed.
+     */
+    private void characters(final String text) throws XMLStreamException {
+        int start = 0;
+        for (int i = 0; i < text.length(); ++i)
+            if (text.charAt(i) == '\r') {
+                if (i > start)
+                    xml.writeCharacters(text.substring(start, i));
+                xml.writeEntityRef("#13");
+                start = i + 1;
+            }
+        if (start < text.length())
+            xml.writeCharacters(start == 0 ? text : text.substring(start));
+    }
+
+    private void newline() throws XMLStreamException {
+        if (compact)
+            ++saved;
+        else
+            xml.writeCharacters("\n");
+    }
+
+    private void indent(final int level) throws XMLStreamException {
+        String indent = indentation(level);
+        if (compact)
+            saved += indent.length();
+        else
+            xml.writeCharacters(indent);
+    }
+
+    private String indentation(final int level) {
+        while (indents.size() <= level) {
+            StringBuilder sb = new StringBuilder("\n");
+            for (int i = 0; i < indents.size(); ++i)
+                sb.append("  ");
+            indents.add(sb.toString());
+        }
+        return indents.get(level);
+    }
+
+    private GeneratorException failed(final Exception e) {
+        file.abort();
+        return failed(file.getPath(), e);
+    }
+
+    private static GeneratorException failed(final Path path, final Exception e) {
+        String message = String.format("Failed to write output file: %s", path.getFileName());
+        return new GeneratorException(message, e);
+    }
+
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.backend;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.flightgear.clgen.GeneratorException;
+import org.flightgear.clgen.ast.AbstractSyntaxTree;
+import org.flightgear.clgen.ast.Item;
+import org.flightgear.clgen.ast.State;
+import org.flightgear.clgen.ast.bindings.CommandBinding;
+import org.flightgear.clgen.ast.bindings.PropertyBinding;
+import org.flightgear.clgen.ast.bindings.ValueBinding;
+import org.flightgear.clgen.ast.conditions.Terminal;
+import org.flightgear.clgen.symbol.Symbol;
+
+/**
+ * Property cross-reference visitor.
+ * <p>
+ * Builds a graph of the item states used in the checklists and the
+ * properties that their conditions read and their bindings write, and
+ * writes it as a Graphviz DOT file and a CSV file of per-property counts.
+ * <p>
+ * Properties are read by terminals in conditions and by the right hand side
+ * of property bindings. They are written by value bindings, by the left hand
+ * side of property bindings and by the property parameters of commands,
+ * i.e. parameters whose names start with "property". Other command
+ * parameters that refer to properties are counted as reads.
+ * <p>
+ * Each state is counted once, however many checks refer to it. The node and
+ * edges of a state are written as soon as the state has been visited, so
+ * only the totals for each property are kept until the end, when the
+ * property nodes and the CSV file are written.
+ *
+ * @author Richard Senior
+ */
+public class XrefVisitor extends AbstractVisitor {
+
+    private static final int READ = 0, WRITE = 1;
+
+    private final Path outputDir;
+
+    private final Set<State> states = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<String, PropertyUsage> properties = new LinkedHashMap<>();
+
+    private OutputFile file;
+    private Writer out;
+    private Item item;
+    private Map<String, int[]> usage;
+
+    /**
+     * Usage of a single property across all states.
+     */
+    private static class PropertyUsage {
+        final String property;
+        final int id;
+        final int[] references = new int[2];
+        final int[] states = new int[2];
+        PropertyUsage(final String property, final int id) {
+            this.property = property;
+            this.id = id;
+        }
+    }
+
+    /**
+     * Constructs a cross-reference visitor with the path to the output
+     * directory.
+     *
+     * @param outputDir the path to the output directory
+     */
+    public XrefVisitor(final Path outputDir) {
+        this.outputDir = outputDir;
+    }
+
+    /*
+     * Property nodes are created by the edges that refer to them and given
+     * their labels at the end, so they take the default node shape. States
+     * have their shape set on each node.
+     */
+    @Override
+    public void enter(final AbstractSyntaxTree ast) throws GeneratorException {
+        file = open(outputDir.resolve("checklists-xref.dot"));
+        out = writer(file);
+        write("digraph xref {\n");
+        write("    rankdir=LR;\n");
+        write("    node [fontsize=10,fontname=\"helvetica\"];\n");
+        write("    node [shape=ellipse];\n");
+    }
+
+    @Override
+    public void exit(final AbstractSyntaxTree ast) throws GeneratorException {
+        for (PropertyUsage p : properties.values())
+            write(String.format("    p%d [label=\"%s\\nR %d/%d W %d/%d\"];\n",
+                p.id, escape(p.property),
+                p.references[READ], p.states[READ],
+                p.references[WRITE], p.states[WRITE]
+            ));
+        write("}\n");
+        try {
+            out.close();
+        } catch (IOException e) {
+            file.abort();
+            throw failed(file.getPath(), e);
+        }
+        System.out.println(file.describe());
+        writeCsv(outputDir.resolve("checklists-xref.csv"));
+    }
+
+    @Override
+    public void enter(final Item item) {
+        this.item = item;
+    }
+
+    /*
+     * A state that has already been visited through another check is
+     * skipped by clearing the current usage.
+     */
+    @Override
+    public void enter(final State state) {
+        usage = states.add(state) ? new LinkedHashMap<>() : null;
+    }
+
+    /*
+     * Edges run from properties to the states that read them and from
+     * states to the properties they write, labelled with the number of
+     * references where there is more than one.
+     */
+    @Override
+    public void exit(final State state) throws GeneratorException {
+        if (usage == null)
+            return;
+        String id = "s" + (states.size() - 1);
+        write(String.format("    %s [shape=box,style=rounded,label=\"%s\\n%s\"];\n",
+            id, escape(item.getName()), escape(state.getName())
+        ));
+        for (Entry<String, int[]> e : usage.entrySet()) {
+            PropertyUsage p = properties.get(e.getKey());
+            int[] count = e.getValue();
+            if (count[READ] > 0) {
+                ++p.states[READ];
+                write(edge("p" + p.id, id, count[READ]));
+            }
+            if (count[WRITE] > 0) {
+                ++p.states[WRITE];
+                write(edge(id, "p" + p.id, count[WRITE]));
+            }
+        }
+        usage = null;
+    }
+
+    @Override
+    public void enter(final Terminal terminal) {
+        if (terminal.getValue() instanceof Symbol)
+            count((Symbol)terminal.getValue(), READ);
+    }
+
+    @Override
+    public void enter(final ValueBinding binding) {
+        count(binding.getSymbol(), WRITE);
+    }
+
+    @Override
+    public void enter(final PropertyBinding binding) {
+        count(binding.getRval(), READ);
+        count(binding.getLval(), WRITE);
+    }
+
+    @Override
+    public void enter(final CommandBinding binding) {
+        for (Entry<String, Object> param : binding.getParams().entrySet())
+            if (param.getValue() instanceof Symbol) {
+                int access = param.getKey().startsWith("property") ? WRITE : READ;
+                count((Symbol)param.getValue(), access);
+            }
+    }
+
+    // Other methods
+
+    private void count(final Symbol symbol, final int access) {
+        if (usage == null)
+            return;
+        String property = symbol.getExpansion();
+        usage.computeIfAbsent(property, p -> new int[2])[access]++;
+        properties.computeIfAbsent(property, p -> new PropertyUsage(p, properties.size()))
+            .references[access]++;
+    }
+
+    private void write(final String s) throws GeneratorException {
+        try {
+            out.write(s);
+        } catch (IOException e) {
+            file.abort();
+            throw failed(file.getPath(), e);
+        }
+    }
+
+    /*
+     * One row per property, most referenced first.
+     */
+    private void writeCsv(final Path path) throws GeneratorException {
+        List<PropertyUsage> rows = new ArrayList<>(properties.values());
+        Collections.sort(rows, (a, b) -> {
+            int c = Integer.compare(
+                b.references[READ] + b.references[WRITE],
+                a.references[READ] + a.references[WRITE]
+            );
+            return c != 0 ? c : a.property.compareTo(b.property);
+        });
+        OutputFile file = open(path);
+        try {
+            Writer out = writer(file);
+            out.write("property,reads,writes,reading states,writing states\n");
+            for (PropertyUsage p : rows)
+                out.write(String.format("%s,%d,%d,%d,%d\n",
+                    csv(p.property),
+                    p.references[READ], p.references[WRITE],
+                    p.states[READ], p.states[WRITE]
+                ));
+            out.close();
+        } catch (IOException e) {
+            file.abort();
+            throw failed(path, e);
+        }
+        System.out.println(file.describe());
+    }
+
+    private static String edge(final String from, final String to, final int count) {
+        if (count == 1)
+            return String.format("    %s -> %s;\n", from, to);
+        return String.format("    %s -> %s [label=\"%d\"];\n", from, to, count);
+    }
+
+    private static String escape(final String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static String csv(final String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0)
+            return s;
+        return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+
+    private static OutputFile open(final Path path) throws GeneratorException {
+        try {
+            return new OutputFile(path);
+        } catch (IOException e) {
+            throw failed(path, e);
+        }
+    }
+
+    private static Writer writer(final OutputFile file) {
+        return new BufferedWriter(new OutputStreamWriter(file, StandardCharsets.UTF_8));
+    }
+
+    private static GeneratorException failed(final Path path, final IOException e) {
+        String message = String.format("Failed to write output file: %s", path.getFileName());
+        return new GeneratorException(message, e);
+    }
+
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.eval;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import org.flightgear.clgen.ast.Item;
+import org.flightgear.clgen.ast.State;
+import org.flightgear.clgen.ast.bindings.AbstractBinding;
+import org.flightgear.clgen.ast.bindings.CommandBinding;
+import org.flightgear.clgen.ast.bindings.PropertyBinding;
+import org.flightgear.clgen.ast.bindings.ValueBinding;
+import org.flightgear.clgen.symbol.Symbol;
+
+/**
+ * Executes bindings against a property tree, as FlightGear does when a
+ * checklist item is clicked.
+ * <p>
+ * Value and property bindings are built in. Commands are run by handlers
+ * registered by name, and the simulator starts with handlers for
+ * property-assign, property-toggle, property-adjust and
+ * property-interpolate. Interpolation is instantaneous, so the property is
+ * left at its final value. Commands without a handler do nothing.
+ * <p>
+ * Bindings are compiled once, with their conditions, into actions that run
+ * without lookups or allocation. A binding with a condition only runs if the
+ * condition is true when the binding is reached.
+ *
+ * @author Richard Senior
+ */
+public class BindingSimulator {
+
+    private final PropertyTree tree;
+    private final ConditionCompiler compiler;
+    private final Map<String, CommandHandler> handlers = new HashMap<>();
+
+    /**
+     * Constructs a binding simulator for a property tree.
+     *
+     * @param tree the property tree
+     */
+    public BindingSimulator(final PropertyTree tree) {
+        this.tree = tree;
+        this.compiler = new ConditionCompiler(tree);
+        register("property-assign", BindingSimulator::assign);
+        register("property-toggle", BindingSimulator::toggle);
+        register("property-adjust", BindingSimulator::adjust);
+        register("property-interpolate", BindingSimulator::assign);
+    }
+
+    /**
+     * Registers a handler for a command, replacing any existing handler.
+     *
+     * @param command the command name
+     * @param handler the handler
+     */
+    public void register(final String command, final CommandHandler handler) {
+        handlers.put(command, handler);
+    }
+
+    /**
+     * Compiles a binding.
+     *
+     * @param binding the binding
+     * @return the action that runs the binding
+     * @throws IllegalArgumentException if the binding is not valid
+     */
+    public Runnable compile(final AbstractBinding binding) {
+        Runnable action = action(binding);
+        if (binding.getCondition() == null)
+            return action;
+        BooleanSupplier condition = compiler.compile(binding.getCondition());
+        return () -> {
+            if (condition.getAsBoolean())
+                action.run();
+        };
+    }
+
+    /**
+     * Checks that running the bindings of each state makes the condition of
+     * the state true. Each state starts from an empty property tree. States
+     * without both a condition and bindings are not checked.
+     *
+     * @param items the items
+     * @return a message for each state that fails
+     */
+    public List<String> verify(final Collection<Item> items) {
+        List<Verification> verifications = new ArrayList<>();
+        for (Item item : items)
+            for (State state : item.getStates().values())
+                if (state.getCondition() != null && !state.getBindings().isEmpty())
+                    verifications.add(new Verification(item, state));
+        List<String> failures = new ArrayList<>();
+        for (Verification verification : verifications) {
+            tree.clear();
+            for (Runnable action : verification.actions)
+                action.run();
+            if (verification.error != null || !verification.condition.getAsBoolean())
+                failures.add(verification.failure());
+        }
+        tree.clear();
+        return failures;
+    }
+
+    // Accessors
+
+    /**
+     * @return the property tree
+     */
+    public PropertyTree getTree() {
+        return tree;
+    }
+
+    // Other methods
+
+    private Runnable action(final AbstractBinding binding) {
+        if (binding instanceof ValueBinding) {
+            ValueBinding b = (ValueBinding)binding;
+            return setter(tree, tree.slot(b.getSymbol().getExpansion()), b.getValue());
+        }
+        if (binding instanceof PropertyBinding) {
+            PropertyBinding b = (PropertyBinding)binding;
+            int to = tree.slot(b.getLval().getExpansion());
+            int from = tree.slot(b.getRval().getExpansion());
+            return () -> tree.copy(from, to);
+        }
+        CommandBinding b = (CommandBinding)binding;
+        CommandHandler handler = handlers.get(b.getCommand());
+        if (handler == null)
+            return () -> {};
+        return handler.compile(tree, b.getParams());
+    }
+
+    /*
+     * Sets a property to a constant or to the value of another property.
+     */
+    private static Runnable setter(final PropertyTree tree, final int slot, final Object value) {
+        if (value instanceof Symbol) {
+            int from = tree.slot(((Symbol)value).getExpansion());
+            return () -> tree.copy(from, slot);
+        }
+        if (value instanceof String) {
+            String s = (String)value;
+            return () -> tree.set(slot, s);
+        }
+        double d = value instanceof Boolean ? (Boolean)value ? 1.0 : 0.0 : ((Number)value).doubleValue();
+        return () -> tree.set(slot, d);
+    }
+
+    private static Runnable assign(final PropertyTree tree, final Map<String, Object> params) {
+        Object value = params.get("value");
+        if (value == null)
+            throw new IllegalArgumentException("Missing parameter: value");
+        return setter(tree, property(tree, params), value);
+    }
+
+    private static Runnable toggle(final PropertyTree tree, final Map<String, Object> params) {
+        int slot = property(tree, params);
+        return () -> tree.set(slot, tree.getBoolean(slot) ? 0.0 : 1.0);
+    }
+
+    private static Runnable adjust(final PropertyTree tree, final Map<String, Object> params) {
+        int slot = property(tree, params);
+        Object step = params.containsKey("step") ? params.get("step") : params.get("offset");
+        if (!(step instanceof Number))
+            throw new IllegalArgumentException("Missing parameter: step");
+        double d = ((Number)step).doubleValue();
+        return () -> tree.set(slot, tree.getDouble(slot) + d);
+    }
+
+    private static int property(final PropertyTree tree, final Map<String, Object> params) {
+        Object property = params.get("property");
+        if (property instanceof Symbol)
+            return tree.slot(((Symbol)property).getExpansion());
+        if (property instanceof String)
+            return tree.slot((String)property);
+        throw new IllegalArgumentException("Missing parameter: property");
+    }
+
+    /*
+     * A state compiled for verification.
+     */
+    private final class Verification {
+
+        final Item item;
+        final State state;
+        final BooleanSupplier condition;
+        final Runnable[] actions;
+        final Set<String> unhandled = new LinkedHashSet<>();
+        String error = null;
+
+        Verification(final Item item, final State state) {
+            this.item = item;
+            this.state = state;
+            condition = compiler.compile(state.getCondition());
+            List<AbstractBinding> bindings = state.getBindings();
+            actions = new Runnable[bindings.size()];
+            for (int i = 0; i < actions.length; ++i) {
+                AbstractBinding binding = bindings.get(i);
+                if (binding instanceof CommandBinding
+                        && !handlers.containsKey(((CommandBinding)binding).getCommand()))
+                    unhandled.add(((CommandBinding)binding).getCommand());
+                try {
+                    actions[i] = compile(binding);
+                } catch (IllegalArgumentException e) {
+                    error = e.getMessage();
+                    actions[i] = () -> {};
+                }
+            }
+        }
+
+        String failure() {
+            if (error != null)
+                return String.format("bindings of state '%s' in item '%s' cannot be simulated: %s",
+                    state.getName(), item.getName(), error
+                );
+            String s = String.format("bindings of state '%s' in item '%s' do not satisfy its condition",
+                state.getName(), item.getName()
+            );
+            if (!unhandled.isEmpty())
+                s += String.format(" (not simulated: %s)", String.join(", ", unhandled));
+            return s;
+        }
+
+    }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.eval;
+
+import java.util.Map;
+
+/**
+ * Simulates an fgcommand for the binding simulator.
+ * <p>
+ * A handler compiles each use of its command once, resolving properties to
+ * slots in the property tree, and returns an action that can be run any
+ * number of times without further lookups.
+ *
+ * @author Richard Senior
+ */
+@FunctionalInterface
+public interface CommandHandler {
+
+    /**
+     * Compiles a command.
+     *
+     * @param tree the property tree the command acts on
+     * @param params the parameters of the command, with properties as
+     * symbols
+     * @return the action that runs the command
+     * @throws IllegalArgumentException if the parameters are not valid
+     */
+    Runnable compile(PropertyTree tree, Map<String, Object> params);
+
+}
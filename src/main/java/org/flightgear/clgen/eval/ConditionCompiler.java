@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.eval;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import org.flightgear.clgen.ast.conditions.AbstractCondition;
+import org.flightgear.clgen.ast.conditions.BinaryCondition;
+import org.flightgear.clgen.ast.conditions.Condition;
+import org.flightgear.clgen.ast.conditions.Operator;
+import org.flightgear.clgen.ast.conditions.Terminal;
+import org.flightgear.clgen.ast.conditions.UnaryCondition;
+import org.flightgear.clgen.symbol.Symbol;
+import org.flightgear.clgen.symbol.Type;
+
+/**
+ * Compiles condition trees into closures that evaluate them against a
+ * property tree.
+ * <p>
+ * The condition tree is walked once, at compile time. Each property is
+ * resolved to its slot in the property tree and each comparison is
+ * specialized on the types of its terminals, so that evaluating a compiled
+ * condition involves no lookups, no boxing and no allocation.
+ * <p>
+ * Comparisons follow FlightGear: if either side is a string, the values are
+ * compared as strings, otherwise they are compared as numbers, with booleans
+ * as 1 and 0. A property on its own is true if its value is true or a
+ * number other than zero.
+ *
+ * @author Richard Senior
+ */
+public class ConditionCompiler {
+
+    private static final BooleanSupplier FALSE = () -> false;
+
+    private final PropertyTree tree;
+
+    /**
+     * Constructs a condition compiler for a property tree.
+     *
+     * @param tree the property tree that compiled conditions read
+     */
+    public ConditionCompiler(final PropertyTree tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * Compiles a condition.
+     *
+     * @param condition the condition, may be null
+     * @return the compiled condition, which is always false if the
+     * condition is null
+     * @throws IllegalArgumentException if the condition is not well formed
+     */
+    public BooleanSupplier compile(final AbstractCondition condition) {
+        if (condition == null)
+            return FALSE;
+        if (condition instanceof Condition)
+            return compile(((Condition)condition).getCondition());
+        if (condition instanceof BinaryCondition)
+            return binary((BinaryCondition)condition);
+        if (condition instanceof UnaryCondition) {
+            UnaryCondition unary = (UnaryCondition)condition;
+            BooleanSupplier operand = compile(unary.getOperand());
+            if (unary.getOperator() == Operator.NOT)
+                return () -> !operand.getAsBoolean();
+            return operand;
+        }
+        if (condition instanceof Terminal)
+            return truth((Terminal)condition);
+        throw new IllegalArgumentException("Unknown condition: " + condition);
+    }
+
+    // Other methods
+
+    private BooleanSupplier binary(final BinaryCondition condition) {
+        Operator op = condition.getOperator();
+        if (op == Operator.AND || op == Operator.OR) {
+            BooleanSupplier lhs = compile(condition.getLhs());
+            BooleanSupplier rhs = compile(condition.getRhs());
+            if (op == Operator.AND)
+                return () -> lhs.getAsBoolean() && rhs.getAsBoolean();
+            return () -> lhs.getAsBoolean() || rhs.getAsBoolean();
+        }
+        Terminal lhs = terminal(condition.getLhs());
+        Terminal rhs = terminal(condition.getRhs());
+        if (isString(lhs) || isString(rhs))
+            return strings(op, string(lhs), string(rhs));
+        if (lhs.getValue() instanceof Symbol && !(rhs.getValue() instanceof Symbol))
+            return property(op, slot(lhs), number(rhs).getAsDouble());
+        return numbers(op, number(lhs), number(rhs));
+    }
+
+    /*
+     * Property compared with a constant, which is by far the most common
+     * comparison in checklists.
+     */
+    private BooleanSupplier property(final Operator op, final int slot, final double c) {
+        switch (op) {
+        case EQ: return () -> tree.getDouble(slot) == c;
+        case NE: return () -> tree.getDouble(slot) != c;
+        case GT: return () -> tree.getDouble(slot) > c;
+        case LT: return () -> tree.getDouble(slot) < c;
+        case GE: return () -> tree.getDouble(slot) >= c;
+        case LE: return () -> tree.getDouble(slot) <= c;
+        default: throw unknown(op);
+        }
+    }
+
+    private BooleanSupplier numbers(final Operator op, final DoubleSupplier lhs,
+            final DoubleSupplier rhs) {
+        switch (op) {
+        case EQ: return () -> lhs.getAsDouble() == rhs.getAsDouble();
+        case NE: return () -> lhs.getAsDouble() != rhs.getAsDouble();
+        case GT: return () -> lhs.getAsDouble() > rhs.getAsDouble();
+        case LT: return () -> lhs.getAsDouble() < rhs.getAsDouble();
+        case GE: return () -> lhs.getAsDouble() >= rhs.getAsDouble();
+        case LE: return () -> lhs.getAsDouble() <= rhs.getAsDouble();
+        default: throw unknown(op);
+        }
+    }
+
+    private BooleanSupplier strings(final Operator op, final Supplier<String> lhs,
+            final Supplier<String> rhs) {
+        switch (op) {
+        case EQ: return () -> lhs.get().equals(rhs.get());
+        case NE: return () -> !lhs.get().equals(rhs.get());
+        case GT: return () -> lhs.get().compareTo(rhs.get()) > 0;
+        case LT: return () -> lhs.get().compareTo(rhs.get()) < 0;
+        case GE: return () -> lhs.get().compareTo(rhs.get()) >= 0;
+        case LE: return () -> lhs.get().compareTo(rhs.get()) <= 0;
+        default: throw unknown(op);
+        }
+    }
+
+    private BooleanSupplier truth(final Terminal terminal) {
+        Object value = terminal.getValue();
+        if (value instanceof Symbol) {
+            int slot = slot(terminal);
+            return () -> tree.getBoolean(slot);
+        }
+        boolean b;
+        if (value instanceof Boolean)
+            b = (Boolean)value;
+        else if (value instanceof Number)
+            b = ((Number)value).doubleValue() != 0.0;
+        else
+            b = "true".equalsIgnoreCase(String.valueOf(value).trim());
+        return b ? () -> true : FALSE;
+    }
+
+    private DoubleSupplier number(final Terminal terminal) {
+        Object value = terminal.getValue();
+        if (value instanceof Symbol) {
+            int slot = slot(terminal);
+            return () -> tree.getDouble(slot);
+        }
+        double d;
+        if (value instanceof Boolean)
+            d = (Boolean)value ? 1.0 : 0.0;
+        else
+            d = ((Number)value).doubleValue();
+        return () -> d;
+    }
+
+    private Supplier<String> string(final Terminal terminal) {
+        Object value = terminal.getValue();
+        if (value instanceof Symbol) {
+            int slot = slot(terminal);
+            return () -> tree.getString(slot);
+        }
+        String s = String.valueOf(value);
+        return () -> s;
+    }
+
+    private int slot(final Terminal terminal) {
+        return tree.slot(((Symbol)terminal.getValue()).getExpansion());
+    }
+
+    private static boolean isString(final Terminal terminal) {
+        Object value = terminal.getValue();
+        if (value instanceof Symbol)
+            return ((Symbol)value).getType() == Type.STRING;
+        return value instanceof String;
+    }
+
+    private static Terminal terminal(final AbstractCondition condition) {
+        if (condition instanceof Terminal)
+            return (Terminal)condition;
+        if (condition instanceof UnaryCondition
+                && ((UnaryCondition)condition).getOperator() == null
+                && ((UnaryCondition)condition).getOperand() instanceof Terminal)
+            return (Terminal)((UnaryCondition)condition).getOperand();
+        throw new IllegalArgumentException("Comparison of a condition: " + condition);
+    }
+
+    private static IllegalArgumentException unknown(final Operator op) {
+        return new IllegalArgumentException("Unknown comparison operator: " + op);
+    }
+
+}
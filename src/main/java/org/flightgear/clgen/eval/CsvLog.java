@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.eval;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming reader for FlightGear CSV property logs.
+ * <p>
+ * The first line of the log holds the column titles. FlightGear uses the
+ * property path as the title unless the log configuration gives another
+ * one, so a column is matched to a property in the tree by its title. A
+ * column titled "Time" or "/sim/time/elapsed-sec" gives the time of each
+ * sample; without one, samples are numbered from zero.
+ * <p>
+ * The log is read in fixed-size chunks and parsed as bytes. Only the columns
+ * of properties that already have a slot in the tree are parsed, so a log
+ * with hundreds of columns costs little more to read than one with just the
+ * properties the checklists use. Plain decimal numbers are parsed without
+ * creating strings. Values are not quoted in FlightGear logs, and an empty
+ * value leaves the property as it was.
+ *
+ * @author Richard Senior
+ */
+public class CsvLog implements AutoCloseable {
+
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final int MAX_DIGITS = 15;
+    private static final double[] POWERS = new double[MAX_DIGITS + 1];
+
+    static {
+        POWERS[0] = 1.0;
+        for (int i = 1; i < POWERS.length; ++i)
+            POWERS[i] = POWERS[i - 1] * 10.0;
+    }
+
+    private final FileChannel channel;
+    private final PropertyTree tree;
+    private ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+    private boolean eof = false;
+    private int lineStart = 0;
+
+    private final List<String> titles = new ArrayList<>();
+    private int[] slots;
+    private int timeColumn = -1;
+    private double time = -1;
+    private long samples = 0;
+
+    /**
+     * Opens a log and reads its column titles.
+     *
+     * @param path the path of the log
+     * @param tree the property tree that receives the values
+     * @throws IOException if the log cannot be read
+     */
+    public CsvLog(final Path path, final PropertyTree tree) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.tree = tree;
+        buffer.flip();
+        if (!line())
+            throw new IOException("Empty log: " + path);
+        header();
+    }
+
+    /**
+     * Reads the next sample into the property tree.
+     *
+     * @return false at the end of the log
+     * @throws IOException if the log cannot be read
+     */
+    public boolean next() throws IOException {
+        while (line()) {
+            int end = buffer.position();
+            int start = lineStart;
+            if (end - start == 0)
+                continue;
+            byte[] b = buffer.array();
+            int column = 0;
+            int field = start;
+            for (int i = start; i <= end; ++i)
+                if (i == end || b[i] == ',') {
+                    if (column < slots.length && i > field)
+                        value(column, b, field, i);
+                    ++column;
+                    field = i + 1;
+                }
+            if (timeColumn < 0)
+                time = samples;
+            ++samples;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Accessors
+
+    /**
+     * @return the column titles
+     */
+    public List<String> getTitles() {
+        return titles;
+    }
+
+    /**
+     * @return the time of the current sample
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * @return the number of samples read so far
+     */
+    public long getSamples() {
+        return samples;
+    }
+
+    // Other methods
+
+    private void header() {
+        byte[] b = buffer.array();
+        String header = new String(b, lineStart, buffer.position() - lineStart, StandardCharsets.UTF_8);
+        titles.addAll(Arrays.asList(header.split(",", -1)));
+        slots = new int[titles.size()];
+        for (int column = 0; column < slots.length; ++column) {
+            String title = PropertyTree.normalize(titles.get(column));
+            slots[column] = tree.find(title);
+            if (timeColumn < 0
+                    && ("time".equalsIgnoreCase(title) || "sim/time/elapsed-sec".equals(title)))
+                timeColumn = column;
+        }
+    }
+
+    private void value(final int column, final byte[] b, final int start, final int end) {
+        int slot = slots[column];
+        if (slot < 0 && column != timeColumn)
+            return;
+        double d = number(b, start, end);
+        if (d != d) {
+            String s = new String(b, start, end - start, StandardCharsets.UTF_8).trim();
+            try {
+                d = Double.parseDouble(s);
+            } catch (NumberFormatException e) {
+                if (slot >= 0)
+                    tree.set(slot, s);
+                return;
+            }
+        }
+        if (column == timeColumn)
+            time = d;
+        if (slot >= 0)
+            tree.set(slot, d);
+    }
+
+    /*
+     * Parses a plain decimal number, returning NaN for anything else so that
+     * the caller can fall back to the general parser. With no more than 15
+     * digits, the mantissa and the power of ten are exact and the division
+     * rounds once, so the result is the same as Double.parseDouble.
+     */
+    private static double number(final byte[] b, final int start, final int end) {
+        int i = start;
+        boolean negative = false;
+        if (b[i] == '-' || b[i] == '+') {
+            negative = b[i] == '-';
+            if (++i == end)
+                return Double.NaN;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        for (; i < end; ++i) {
+            byte c = b[i];
+            if (c >= '0' && c <= '9') {
+                if (++digits > MAX_DIGITS)
+                    return Double.NaN;
+                mantissa = mantissa * 10 + (c - '0');
+                if (point)
+                    ++scale;
+            } else if (c == '.' && !point)
+                point = true;
+            else
+                return Double.NaN;
+        }
+        if (digits == 0)
+            return Double.NaN;
+        double d = scale == 0 ? mantissa : mantissa / POWERS[scale];
+        return negative ? -d : d;
+    }
+
+    /*
+     * Finds the next line in the buffer, reading another chunk if the line
+     * is not complete. On return, lineStart is the start of the line and the
+     * buffer position is its end, without the line terminator.
+     */
+    private boolean line() throws IOException {
+        while (true) {
+            byte[] b = buffer.array();
+            int start = buffer.position();
+            if (start < buffer.limit() && (b[start] == '\n' || b[start] == '\r'))
+                ++start;
+            for (int i = start; i < buffer.limit(); ++i)
+                if (b[i] == '\n' || b[i] == '\r') {
+                    lineStart = start;
+                    buffer.position(i);
+                    return true;
+                }
+            if (eof) {
+                if (start == buffer.limit())
+                    return false;
+                lineStart = start;
+                buffer.position(buffer.limit());
+                return true;
+            }
+            buffer.position(start);
+            fill();
+        }
+    }
+
+    private void fill() throws IOException {
+        buffer.compact();
+        if (!buffer.hasRemaining()) {
+            ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+        if (channel.read(buffer) < 0)
+            eof = true;
+        buffer.flip();
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.eval;
+
+/**
+ * Interval of time during which a condition was satisfied.
+ *
+ * @author Richard Senior
+ */
+public class Interval {
+
+    private final double start;
+    private final double end;
+
+    /**
+     * Constructs an interval.
+     *
+     * @param start the time the condition became satisfied
+     * @param end the time it stopped being satisfied, or the end of the log
+     */
+    public Interval(final double start, final double end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    // Accessors
+
+    /**
+     * @return the start time
+     */
+    public double getStart() {
+        return start;
+    }
+
+    /**
+     * @return the end time
+     */
+    public double getEnd() {
+        return end;
+    }
+
+    /**
+     * @return the length of the interval
+     */
+    public double getDuration() {
+        return end - start;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.1f-%.1f", start, end);
+    }
+
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.eval;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory snapshot of FlightGear properties.
+ * <p>
+ * Each property path is given a slot when it is first used, and values are
+ * held in arrays indexed by slot. Compiled conditions look up their slots
+ * once, when they are compiled, so evaluating them costs an array access
+ * per property rather than a map lookup.
+ * <p>
+ * Every value is held both as a number and as a string, in the same way as
+ * a FlightGear property node can be read as any type. Numbers and booleans
+ * are held as doubles, with true as 1 and false as 0. The strings "true"
+ * and "false", as FlightGear reports booleans, read as 1 and 0. Any other
+ * string that is not a number reads as NaN. A property that has not been
+ * set reads as 0, false or the empty string.
+ * <p>
+ * Paths are normalized so that "/a/b[0]/c" and "a/b/c" are the same
+ * property. A property tree is not thread safe.
+ *
+ * @author Richard Senior
+ */
+public class PropertyTree {
+
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final List<String> paths = new ArrayList<>();
+    private double[] numbers = new double[16];
+    private String[] strings = new String[16];
+
+    /**
+     * Gets the slot of a property, adding the property if it is new.
+     *
+     * @param path the property path
+     * @return the slot
+     */
+    public int slot(final String path) {
+        String normalized = normalize(path);
+        Integer slot = slots.get(normalized);
+        if (slot != null)
+            return slot;
+        int n = paths.size();
+        if (n == numbers.length) {
+            numbers = Arrays.copyOf(numbers, n * 2);
+            strings = Arrays.copyOf(strings, n * 2);
+        }
+        slots.put(normalized, n);
+        paths.add(normalized);
+        strings[n] = "";
+        return n;
+    }
+
+    /**
+     * Finds the slot of a property without adding it.
+     *
+     * @param path the property path
+     * @return the slot, or -1 if the property has no slot
+     */
+    public int find(final String path) {
+        Integer slot = slots.get(normalize(path));
+        return slot != null ? slot : -1;
+    }
+
+    /**
+     * Sets the value of a property.
+     *
+     * @param path the property path
+     * @param value the value, a number, boolean or string
+     */
+    public void set(final String path, final Object value) {
+        set(slot(path), value);
+    }
+
+    /**
+     * Sets the value of the property in a slot.
+     *
+     * @param slot the slot
+     * @param value the value, a number, boolean or string
+     */
+    public void set(final int slot, final Object value) {
+        if (value instanceof Number)
+            set(slot, ((Number)value).doubleValue());
+        else if (value instanceof Boolean)
+            set(slot, (Boolean)value ? 1.0 : 0.0);
+        else if (value == null)
+            set(slot, 0.0);
+        else
+            set(slot, value.toString());
+    }
+
+    /**
+     * Sets a numeric value in a slot.
+     *
+     * @param slot the slot
+     * @param value the value
+     */
+    public void set(final int slot, final double value) {
+        numbers[slot] = value;
+        strings[slot] = null;
+    }
+
+    /**
+     * Sets a string value in a slot.
+     *
+     * @param slot the slot
+     * @param value the value
+     */
+    public void set(final int slot, final String value) {
+        numbers[slot] = parse(value);
+        strings[slot] = value;
+    }
+
+    /**
+     * Copies the value of one property to another.
+     *
+     * @param from the slot to copy from
+     * @param to the slot to copy to
+     */
+    public void copy(final int from, final int to) {
+        numbers[to] = numbers[from];
+        strings[to] = strings[from];
+    }
+
+    /**
+     * Gets the value of a property as a number.
+     *
+     * @param path the property path
+     * @return the value, 0 if the property is not set
+     */
+    public double getDouble(final String path) {
+        Integer slot = slots.get(normalize(path));
+        return slot != null ? getDouble(slot) : 0.0;
+    }
+
+    /**
+     * Gets the value of the property in a slot as a number.
+     *
+     * @param slot the slot
+     * @return the value
+     */
+    public double getDouble(final int slot) {
+        return numbers[slot];
+    }
+
+    /**
+     * Gets the value of the property in a slot as a boolean. A string is
+     * true if it is "true" or a number other than zero.
+     *
+     * @param slot the slot
+     * @return the value
+     */
+    public boolean getBoolean(final int slot) {
+        double d = numbers[slot];
+        return d == d && d != 0.0;
+    }
+
+    /**
+     * Gets the value of the property in a slot as a string. Whole numbers
+     * are written without a decimal point.
+     *
+     * @param slot the slot
+     * @return the value
+     */
+    public String getString(final int slot) {
+        String s = strings[slot];
+        if (s != null)
+            return s;
+        double d = numbers[slot];
+        if (d == Math.rint(d) && !Double.isInfinite(d) && Math.abs(d) < 1e15)
+            return Long.toString((long)d);
+        return Double.toString(d);
+    }
+
+    /**
+     * Sets the property in a slot back to 0, false or the empty string, as
+     * if it had never been set.
+     *
+     * @param slot the slot
+     */
+    public void unset(final int slot) {
+        numbers[slot] = 0.0;
+        strings[slot] = "";
+    }
+
+    /**
+     * Sets every property back to 0, false or the empty string. The slots
+     * are kept.
+     */
+    public void clear() {
+        Arrays.fill(numbers, 0.0);
+        Arrays.fill(strings, 0, paths.size(), "");
+    }
+
+    // Accessors
+
+    /**
+     * @return the normalized paths of the properties, in slot order
+     */
+    public List<String> getPaths() {
+        return Collections.unmodifiableList(paths);
+    }
+
+    // Other methods
+
+    /**
+     * Normalizes a property path by removing leading and trailing slashes
+     * and zero indices.
+     *
+     * @param path the property path
+     * @return the normalized path
+     */
+    public static String normalize(final String path) {
+        String s = path.trim();
+        int start = 0;
+        int end = s.length();
+        while (start < end && s.charAt(start) == '/')
+            ++start;
+        while (end > start && s.charAt(end - 1) == '/')
+            --end;
+        s = s.substring(start, end);
+        return s.contains("[0]") ? s.replace("[0]", "") : s;
+    }
+
+    private static double parse(final String s) {
+        String t = s.trim();
+        if ("true".equalsIgnoreCase(t))
+            return 1.0;
+        if ("false".equalsIgnoreCase(t))
+            return 0.0;
+        try {
+            return Double.parseDouble(t);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+}
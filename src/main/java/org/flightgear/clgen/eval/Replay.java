@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.eval;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.flightgear.clgen.ast.AbstractSyntaxTree;
+import org.flightgear.clgen.ast.Check;
+import org.flightgear.clgen.ast.Checklist;
+import org.flightgear.clgen.ast.Page;
+import org.flightgear.clgen.ast.State;
+
+/**
+ * Replays a recorded property log against the checklists.
+ * <p>
+ * At every sample in the log, the condition of every state is evaluated.
+ * The result is the intervals during which the state of each check was
+ * satisfied and, for each checklist, the intervals during which all of its
+ * checks with conditions were satisfied at the same time, when the
+ * checklist was complete.
+ *
+ * @author Richard Senior
+ */
+public class Replay {
+
+    private final AbstractSyntaxTree ast;
+    private final PropertyTree tree = new PropertyTree();
+    private final StateEvaluator evaluator;
+    private final Map<State, Integer> numbers = new IdentityHashMap<>();
+
+    private final Map<Check, List<Interval>> checks = new LinkedHashMap<>();
+    private final Map<Checklist, List<Interval>> checklists = new LinkedHashMap<>();
+    private List<String> missing = new ArrayList<>();
+    private long samples = 0;
+
+    /**
+     * Constructs a replay for the checklists of an abstract syntax tree.
+     *
+     * @param ast the abstract syntax tree
+     */
+    public Replay(final AbstractSyntaxTree ast) {
+        this.ast = ast;
+        evaluator = new StateEvaluator(ast, tree);
+        List<State> states = evaluator.getStates();
+        for (int i = 0; i < states.size(); ++i)
+            numbers.put(states.get(i), i);
+    }
+
+    /**
+     * Replays a log.
+     *
+     * @param log the path of the CSV log
+     * @throws IOException if the log cannot be read
+     */
+    public void run(final Path log) throws IOException {
+        List<State> states = evaluator.getStates();
+        List<List<Interval>> intervals = new ArrayList<>();
+        for (int i = 0; i < states.size(); ++i)
+            intervals.add(new ArrayList<>());
+
+        List<Checklist> tracked = new ArrayList<>();
+        List<int[]> members = new ArrayList<>();
+        checks.clear();
+        checklists.clear();
+        for (Checklist checklist : ast.getChecklists()) {
+            List<Integer> m = new ArrayList<>();
+            for (Page page : checklist.getPages())
+                for (Check check : page.getChecks()) {
+                    Integer n = check.getState() != null ? numbers.get(check.getState()) : null;
+                    if (n != null) {
+                        checks.put(check, intervals.get(n));
+                        m.add(n);
+                    }
+                }
+            if (!m.isEmpty()) {
+                tracked.add(checklist);
+                members.add(m.stream().mapToInt(Integer::intValue).toArray());
+                checklists.put(checklist, new ArrayList<>());
+            }
+        }
+
+        boolean[] satisfied = new boolean[states.size()];
+        double[] since = new double[states.size()];
+        double[] completeSince = new double[tracked.size()];
+        Arrays.fill(since, Double.NaN);
+        Arrays.fill(completeSince, Double.NaN);
+        double time = 0;
+        tree.clear();
+        samples = 0;
+        try (CsvLog csv = new CsvLog(log, tree)) {
+            missing = missing(csv.getTitles());
+            while (csv.next()) {
+                time = csv.getTime();
+                evaluator.evaluate(satisfied);
+                for (int i = 0; i < satisfied.length; ++i)
+                    since[i] = transition(satisfied[i], since[i], time, intervals.get(i));
+                for (int c = 0; c < members.size(); ++c) {
+                    boolean complete = true;
+                    for (int n : members.get(c))
+                        complete &= satisfied[n];
+                    completeSince[c] = transition(complete, completeSince[c], time,
+                        checklists.get(tracked.get(c))
+                    );
+                }
+                ++samples;
+            }
+        }
+        for (int i = 0; i < since.length; ++i)
+            transition(false, since[i], time, intervals.get(i));
+        for (int c = 0; c < completeSince.length; ++c)
+            transition(false, completeSince[c], time, checklists.get(tracked.get(c)));
+    }
+
+    /**
+     * Prints the intervals of each check and checklist.
+     *
+     * @param out the stream to print to
+     */
+    public void report(final PrintStream out) {
+        out.format("Replayed %d sample%s\n", samples, samples != 1 ? "s" : "");
+        for (String path : missing)
+            out.format("    not in log: %s\n", path);
+        for (Checklist checklist : ast.getChecklists()) {
+            List<Interval> complete = checklists.get(checklist);
+            if (complete == null)
+                continue;
+            out.format("%s: %s\n", checklist.getTitle(), describe(complete, "never complete"));
+            for (Page page : checklist.getPages())
+                for (Check check : page.getChecks())
+                    if (checks.containsKey(check))
+                        out.format("    %s %s: %s\n",
+                            check.getItem().getName(), check.getState().getName(),
+                            describe(checks.get(check), "never")
+                        );
+        }
+    }
+
+    // Accessors
+
+    /**
+     * @return the intervals during which the state of each check was
+     * satisfied, for checks whose state has a condition
+     */
+    public Map<Check, List<Interval>> getChecks() {
+        return checks;
+    }
+
+    /**
+     * @return the intervals during which each checklist was complete, for
+     * checklists with at least one check whose state has a condition
+     */
+    public Map<Checklist, List<Interval>> getChecklists() {
+        return checklists;
+    }
+
+    /**
+     * @return the properties used by conditions that are not in the log
+     */
+    public List<String> getMissing() {
+        return missing;
+    }
+
+    /**
+     * @return the number of samples in the log
+     */
+    public long getSamples() {
+        return samples;
+    }
+
+    // Other methods
+
+    /*
+     * Records the end of an interval when a condition stops being satisfied,
+     * returning the start of the current interval, or NaN if there is none.
+     */
+    private static double transition(final boolean satisfied, final double since,
+            final double time, final List<Interval> intervals) {
+        if (satisfied)
+            return Double.isNaN(since) ? time : since;
+        if (!Double.isNaN(since))
+            intervals.add(new Interval(since, time));
+        return Double.NaN;
+    }
+
+    private List<String> missing(final List<String> titles) {
+        PropertyTree columns = new PropertyTree();
+        titles.forEach(columns::slot);
+        List<String> paths = new ArrayList<>();
+        for (String path : tree.getPaths())
+            if (columns.find(path) < 0)
+                paths.add(path);
+        Collections.sort(paths);
+        return paths;
+    }
+
+    private static String describe(final List<Interval> intervals, final String none) {
+        if (intervals.isEmpty())
+            return none;
+        StringBuilder sb = new StringBuilder();
+        for (Interval interval : intervals)
+            sb.append(sb.length() > 0 ? ", " : "").append(interval);
+        return sb.toString();
+    }
+
+}
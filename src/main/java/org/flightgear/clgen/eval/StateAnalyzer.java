@@ -0,0 +1,538 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.eval;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.flightgear.clgen.ast.Item;
+import org.flightgear.clgen.ast.State;
+import org.flightgear.clgen.ast.conditions.AbstractCondition;
+import org.flightgear.clgen.ast.conditions.BinaryCondition;
+import org.flightgear.clgen.ast.conditions.Condition;
+import org.flightgear.clgen.ast.conditions.Operator;
+import org.flightgear.clgen.ast.conditions.Terminal;
+import org.flightgear.clgen.ast.conditions.UnaryCondition;
+import org.flightgear.clgen.symbol.Symbol;
+import org.flightgear.clgen.symbol.Type;
+
+/**
+ * Static analysis of the states of an item.
+ * <p>
+ * Each condition is rewritten as a disjunction of boxes, where a box is a
+ * conjunction of constraints on single properties. A numeric constraint is
+ * a range with some values excluded and a string constraint is a value, or
+ * a set of excluded values. Properties typed as booleans take the values 0
+ * and 1, integers take whole numbers and other properties take any number.
+ * <p>
+ * Anything that cannot be represented, such as a comparison between two
+ * properties, is taken as possibly true and makes the box inexact. The
+ * analysis then reports:
+ * <ul>
+ * <li>states that can never be true, because every box is empty
+ * <li>pairs of states that can be true at the same time, found from exact
+ * boxes that test a common property, unless one state is a special case of
+ * the other
+ * <li>values for which no state is true, only for items whose states all
+ * test the same numeric property exactly, and only where two ranges meet
+ * </ul>
+ * The number of boxes for a condition is capped, so the analysis takes
+ * time proportional to the size of the conditions.
+ *
+ * @author Richard Senior
+ */
+public class StateAnalyzer {
+
+    private static final int MAX_BOXES = 64;
+
+    /**
+     * Analyzes the states of an item.
+     *
+     * @param item the item
+     * @return a message for each problem found
+     */
+    public List<String> analyze(final Item item) {
+        List<String> messages = new ArrayList<>();
+        List<State> states = new ArrayList<>();
+        List<List<Box>> boxes = new ArrayList<>();
+        for (State state : item.getStates().values())
+            if (state.getCondition() != null) {
+                List<Box> b = boxes(state.getCondition(), false);
+                if (b.isEmpty())
+                    messages.add(String.format("state '%s' in item '%s' can never be true",
+                        state.getName(), item.getName()
+                    ));
+                else {
+                    states.add(state);
+                    boxes.add(b);
+                }
+            }
+        for (int i = 0; i < states.size(); ++i)
+            for (int j = i + 1; j < states.size(); ++j)
+                if (overlap(boxes.get(i), boxes.get(j))
+                        && !within(boxes.get(i), boxes.get(j))
+                        && !within(boxes.get(j), boxes.get(i)))
+                    messages.add(String.format("states '%s' and '%s' in item '%s' can both be true",
+                        states.get(i).getName(), states.get(j).getName(), item.getName()
+                    ));
+        if (states.size() > 1) {
+            String gap = gap(boxes);
+            if (gap != null)
+                messages.add(String.format("no state in item '%s' is true when %s",
+                    item.getName(), gap
+                ));
+        }
+        return messages;
+    }
+
+    // Other methods
+
+    /*
+     * Rewrites a condition, or its negation, as a list of boxes. An empty
+     * list is false.
+     */
+    private List<Box> boxes(final AbstractCondition condition, final boolean negated) {
+        if (condition instanceof Condition)
+            return boxes(((Condition)condition).getCondition(), negated);
+        if (condition instanceof UnaryCondition) {
+            UnaryCondition unary = (UnaryCondition)condition;
+            boolean not = unary.getOperator() == Operator.NOT;
+            return boxes(unary.getOperand(), not != negated);
+        }
+        if (condition instanceof Terminal)
+            return truth((Terminal)condition, negated);
+        BinaryCondition binary = (BinaryCondition)condition;
+        Operator op = binary.getOperator();
+        if (op == Operator.AND || op == Operator.OR) {
+            List<Box> lhs = boxes(binary.getLhs(), negated);
+            List<Box> rhs = boxes(binary.getRhs(), negated);
+            return (op == Operator.AND) != negated ? and(lhs, rhs) : or(lhs, rhs);
+        }
+        return comparison(binary, negated ? negate(op) : op);
+    }
+
+    private static List<Box> and(final List<Box> lhs, final List<Box> rhs) {
+        if ((long)lhs.size() * rhs.size() > MAX_BOXES)
+            return unknown();
+        List<Box> boxes = new ArrayList<>();
+        for (Box a : lhs)
+            for (Box b : rhs) {
+                Box box = a.intersect(b);
+                if (!box.isEmpty())
+                    boxes.add(box);
+            }
+        return boxes;
+    }
+
+    private static List<Box> or(final List<Box> lhs, final List<Box> rhs) {
+        if (lhs.size() + rhs.size() > MAX_BOXES)
+            return unknown();
+        List<Box> boxes = new ArrayList<>(lhs);
+        boxes.addAll(rhs);
+        return boxes;
+    }
+
+    private List<Box> truth(final Terminal terminal, final boolean negated) {
+        Object value = terminal.getValue();
+        if (value instanceof Symbol) {
+            Symbol symbol = (Symbol)value;
+            if (symbol.getType() == Type.STRING)
+                return unknown();
+            return constrain(symbol, negated ? Operator.EQ : Operator.NE, 0.0);
+        }
+        boolean b;
+        if (value instanceof Boolean)
+            b = (Boolean)value;
+        else if (value instanceof Number)
+            b = ((Number)value).doubleValue() != 0.0;
+        else
+            return unknown();
+        return b != negated ? Collections.singletonList(new Box()) : Collections.emptyList();
+    }
+
+    private List<Box> comparison(final BinaryCondition condition, final Operator op) {
+        Object lhs = value(condition.getLhs());
+        Object rhs = value(condition.getRhs());
+        if (lhs instanceof Symbol && !(rhs instanceof Symbol) && rhs != null)
+            return constrain((Symbol)lhs, op, rhs);
+        if (rhs instanceof Symbol && !(lhs instanceof Symbol) && lhs != null)
+            return constrain((Symbol)rhs, reverse(op), lhs);
+        return unknown();
+    }
+
+    private List<Box> constrain(final Symbol symbol, final Operator op, final Object value) {
+        Range range;
+        if (value instanceof String) {
+            if (op != Operator.EQ && op != Operator.NE)
+                return unknown();
+            range = Range.string(op, (String)value);
+        } else if (symbol.getType() == Type.STRING)
+            return unknown();
+        else {
+            double d = value instanceof Boolean
+                ? (Boolean)value ? 1.0 : 0.0
+                : ((Number)value).doubleValue();
+            range = Range.number(symbol.getType(), op, d);
+        }
+        Box box = new Box();
+        box.ranges.put(PropertyTree.normalize(symbol.getExpansion()), range);
+        return box.isEmpty() ? Collections.emptyList() : Collections.singletonList(box);
+    }
+
+    /*
+     * States that test different properties, such as a switch and the
+     * voltage it controls, are not compared since the relationship between
+     * the properties is unknown.
+     */
+    private static boolean overlap(final List<Box> a, final List<Box> b) {
+        for (Box x : a)
+            for (Box y : b)
+                if (x.exact && y.exact && x.shares(y) && !x.intersect(y).isEmpty())
+                    return true;
+        return false;
+    }
+
+    /*
+     * Whether every box of one state lies within an exact box of the other,
+     * so the first state is a special case of the second.
+     */
+    private static boolean within(final List<Box> inner, final List<Box> outer) {
+        for (Box x : inner) {
+            boolean found = false;
+            for (Box y : outer)
+                if (y.exact && y.contains(x))
+                    found = true;
+            if (!found)
+                return false;
+        }
+        return true;
+    }
+
+    /*
+     * Looks for a value of the one property tested by every state for which
+     * no state is true, returning a description of the value or null.
+     */
+    private static String gap(final List<List<Box>> states) {
+        String property = null;
+        List<Range> ranges = new ArrayList<>();
+        for (List<Box> boxes : states)
+            for (Box box : boxes) {
+                if (!box.exact || box.ranges.size() != 1)
+                    return null;
+                Entry<String, Range> entry = box.ranges.entrySet().iterator().next();
+                if (property != null && !property.equals(entry.getKey()))
+                    return null;
+                property = entry.getKey();
+                ranges.add(entry.getValue());
+            }
+        Double uncovered = Range.uncovered(ranges);
+        if (uncovered == null)
+            return null;
+        return String.format("%s is %s", property, Range.format(uncovered));
+    }
+
+    private static Object value(final AbstractCondition condition) {
+        if (condition instanceof Terminal)
+            return ((Terminal)condition).getValue();
+        if (condition instanceof UnaryCondition && ((UnaryCondition)condition).getOperator() == null)
+            return value(((UnaryCondition)condition).getOperand());
+        return null;
+    }
+
+    private static List<Box> unknown() {
+        Box box = new Box();
+        box.exact = false;
+        return Collections.singletonList(box);
+    }
+
+    private static Operator negate(final Operator op) {
+        switch (op) {
+        case EQ: return Operator.NE;
+        case NE: return Operator.EQ;
+        case LT: return Operator.GE;
+        case GE: return Operator.LT;
+        case GT: return Operator.LE;
+        default: return Operator.GT;
+        }
+    }
+
+    private static Operator reverse(final Operator op) {
+        switch (op) {
+        case LT: return Operator.GT;
+        case GT: return Operator.LT;
+        case LE: return Operator.GE;
+        case GE: return Operator.LE;
+        default: return op;
+        }
+    }
+
+    // Box
+
+    /*
+     * Conjunction of ranges of properties. A property without a range can
+     * take any value.
+     */
+    private static final class Box {
+
+        final Map<String, Range> ranges = new TreeMap<>();
+        boolean exact = true;
+
+        Box intersect(final Box other) {
+            Box box = new Box();
+            box.exact = exact && other.exact;
+            box.ranges.putAll(ranges);
+            for (Entry<String, Range> entry : other.ranges.entrySet()) {
+                Range range = box.ranges.get(entry.getKey());
+                if (range == null)
+                    box.ranges.put(entry.getKey(), entry.getValue());
+                else if (range.string != entry.getValue().string) {
+                    // Tested as a number and as a string, so give up on it
+                    box.ranges.remove(entry.getKey());
+                    box.exact = false;
+                } else
+                    box.ranges.put(entry.getKey(), range.intersect(entry.getValue()));
+            }
+            return box;
+        }
+
+        boolean shares(final Box other) {
+            for (String property : ranges.keySet())
+                if (other.ranges.containsKey(property))
+                    return true;
+            return false;
+        }
+
+        boolean contains(final Box other) {
+            for (Entry<String, Range> entry : ranges.entrySet()) {
+                Range range = other.ranges.get(entry.getKey());
+                if (range == null || !entry.getValue().contains(range))
+                    return false;
+            }
+            return true;
+        }
+
+        boolean isEmpty() {
+            for (Range range : ranges.values())
+                if (range.isEmpty())
+                    return true;
+            return false;
+        }
+
+    }
+
+    // Range
+
+    /*
+     * Values of one property. Numeric ranges have bounds, which may be open,
+     * and excluded values. String ranges have a single value or none, and
+     * excluded values.
+     */
+    private static final class Range {
+
+        final boolean string;
+        final Type type;
+        double lo = Double.NEGATIVE_INFINITY;
+        double hi = Double.POSITIVE_INFINITY;
+        boolean loOpen = true;
+        boolean hiOpen = true;
+        String equal = null;
+        final Set<Object> excluded = new HashSet<>();
+
+        private Range(final boolean string, final Type type) {
+            this.string = string;
+            this.type = type;
+        }
+
+        static Range number(final Type type, final Operator op, final double d) {
+            Range r = new Range(false, type);
+            switch (op) {
+            case EQ: r.lo = r.hi = d; r.loOpen = r.hiOpen = false; break;
+            case NE: r.excluded.add(d); break;
+            case LT: r.hi = d; break;
+            case LE: r.hi = d; r.hiOpen = false; break;
+            case GT: r.lo = d; break;
+            default: r.lo = d; r.loOpen = false; break;
+            }
+            return r;
+        }
+
+        static Range string(final Operator op, final String s) {
+            Range r = new Range(true, Type.STRING);
+            if (op == Operator.EQ)
+                r.equal = s;
+            else
+                r.excluded.add(s);
+            return r;
+        }
+
+        Range intersect(final Range other) {
+            Range r = new Range(string, type);
+            r.excluded.addAll(excluded);
+            r.excluded.addAll(other.excluded);
+            if (string) {
+                if (equal != null && other.equal != null && !equal.equals(other.equal))
+                    r.excluded.add(r.equal = equal);
+                else
+                    r.equal = equal != null ? equal : other.equal;
+                return r;
+            }
+            if (lo > other.lo || lo == other.lo && loOpen) {
+                r.lo = lo;
+                r.loOpen = loOpen;
+            } else {
+                r.lo = other.lo;
+                r.loOpen = other.loOpen;
+            }
+            if (hi < other.hi || hi == other.hi && hiOpen) {
+                r.hi = hi;
+                r.hiOpen = hiOpen;
+            } else {
+                r.hi = other.hi;
+                r.hiOpen = other.hiOpen;
+            }
+            return r;
+        }
+
+        boolean contains(final Object value) {
+            if (excluded.contains(value))
+                return false;
+            if (string)
+                return equal == null || equal.equals(value);
+            double d = (Double)value;
+            return (d > lo || d == lo && !loOpen) && (d < hi || d == hi && !hiOpen);
+        }
+
+        boolean contains(final Range other) {
+            if (string != other.string)
+                return false;
+            for (Object value : excluded)
+                if (other.contains(value))
+                    return false;
+            if (string)
+                return equal == null || equal.equals(other.equal);
+            return (other.lo > lo || other.lo == lo && (other.loOpen || !loOpen))
+                && (other.hi < hi || other.hi == hi && (other.hiOpen || !hiOpen));
+        }
+
+        boolean isPoint() {
+            return !string && lo == hi;
+        }
+
+        boolean isEmpty() {
+            if (string)
+                return equal != null && excluded.contains(equal);
+            if (type == Type.BOOL)
+                return !contains(0.0) && !contains(1.0);
+            if (type == Type.INT) {
+                double first;
+                if (lo == Double.NEGATIVE_INFINITY)
+                    first = hi == Double.POSITIVE_INFINITY ? 0 : Math.floor(hi) - excluded.size() - 1;
+                else {
+                    first = Math.ceil(lo);
+                    if (first == lo && loOpen)
+                        ++first;
+                }
+                for (double d = first; d <= hi && d <= first + excluded.size(); ++d)
+                    if (contains(d))
+                        return false;
+                return true;
+            }
+            if (lo < hi)
+                return false;
+            return lo > hi || !contains(lo);
+        }
+
+        /*
+         * Finds a number that is in none of the ranges, which all have the
+         * same type, where values either side of it are covered. This is
+         * a value left out where two ranges meet, such as 1 for p < 1 and
+         * p > 1, and is always a bound or excluded value, or a whole number
+         * next to one.
+         * <p>
+         * Wider gaps are not reported, since states usually leave out values
+         * on purpose, such as flaps between the settings in a checklist or
+         * negative volts. Nor are gaps between states that are all single
+         * values, like switch positions, or between strings.
+         */
+        static Double uncovered(final List<Range> ranges) {
+            if (ranges.get(0).string || ranges.stream().allMatch(Range::isPoint))
+                return null;
+            Type type = ranges.get(0).type;
+            if (type == Type.BOOL) {
+                for (double d = 0; d <= 1; ++d)
+                    if (!covered(ranges, d))
+                        return d;
+                return null;
+            }
+            TreeSet<Double> points = new TreeSet<>();
+            for (Range r : ranges) {
+                if (!Double.isInfinite(r.lo))
+                    points.add(r.lo);
+                if (!Double.isInfinite(r.hi))
+                    points.add(r.hi);
+                for (Object o : r.excluded)
+                    points.add((Double)o);
+            }
+            // Untyped properties only compared with whole numbers are
+            // taken to be whole numbers, like switch positions
+            if (type == Type.NULL && points.stream().allMatch(d -> d == Math.rint(d)))
+                type = Type.INT;
+            List<Double> bounds = new ArrayList<>(points);
+            for (int i = 0; i < bounds.size(); ++i) {
+                double d = bounds.get(i);
+                if (type == Type.INT) {
+                    for (double w = Math.ceil(d) - 1; w <= Math.floor(d) + 1; ++w)
+                        if (hole(ranges, w, w - 1, w + 1))
+                            return w;
+                } else {
+                    double below = i > 0 ? (bounds.get(i - 1) + d) / 2 : d - 1;
+                    double above = i + 1 < bounds.size() ? (d + bounds.get(i + 1)) / 2 : d + 1;
+                    if (hole(ranges, d, below, above))
+                        return d;
+                }
+            }
+            return null;
+        }
+
+        static boolean hole(final List<Range> ranges, final double value,
+                final double below, final double above) {
+            return !covered(ranges, value) && covered(ranges, below) && covered(ranges, above);
+        }
+
+        static boolean covered(final List<Range> ranges, final double value) {
+            for (Range r : ranges)
+                if (r.contains(value))
+                    return true;
+            return false;
+        }
+
+        static String format(final double d) {
+            if (d == Math.rint(d) && Math.abs(d) < 1e15)
+                return Long.toString((long)d);
+            return Double.toString(d);
+        }
+
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.eval;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import org.flightgear.clgen.ast.AbstractSyntaxTree;
+import org.flightgear.clgen.ast.Item;
+import org.flightgear.clgen.ast.State;
+
+/**
+ * Evaluates the states of checklist items against a property tree.
+ * <p>
+ * The condition of every state is compiled once, when the evaluator is
+ * constructed. States are numbered in item order and then in the order of
+ * the states in each item, so that all the states can be evaluated into an
+ * array without allocating anything. States without a condition are never
+ * satisfied and are not numbered.
+ *
+ * @author Richard Senior
+ */
+public class StateEvaluator {
+
+    private final PropertyTree tree;
+    private final List<Item> items = new ArrayList<>();
+    private final List<State> states = new ArrayList<>();
+    private final BooleanSupplier[] conditions;
+
+    /**
+     * Constructs an evaluator for the items of an abstract syntax tree.
+     *
+     * @param ast the abstract syntax tree
+     * @param tree the property tree that conditions are evaluated against
+     */
+    public StateEvaluator(final AbstractSyntaxTree ast, final PropertyTree tree) {
+        this(ast.getItems().values(), tree);
+    }
+
+    /**
+     * Constructs an evaluator for a collection of items.
+     *
+     * @param items the items
+     * @param tree the property tree that conditions are evaluated against
+     */
+    public StateEvaluator(final Collection<Item> items, final PropertyTree tree) {
+        this.tree = tree;
+        ConditionCompiler compiler = new ConditionCompiler(tree);
+        List<BooleanSupplier> compiled = new ArrayList<>();
+        for (Item item : items)
+            for (State state : item.getStates().values())
+                if (state.getCondition() != null) {
+                    this.items.add(item);
+                    states.add(state);
+                    compiled.add(compiler.compile(state.getCondition()));
+                }
+        conditions = compiled.toArray(new BooleanSupplier[compiled.size()]);
+    }
+
+    /**
+     * Evaluates every state.
+     *
+     * @param satisfied receives whether each state is satisfied, by number
+     */
+    public void evaluate(final boolean[] satisfied) {
+        for (int i = 0; i < conditions.length; ++i)
+            satisfied[i] = conditions[i].getAsBoolean();
+    }
+
+    /**
+     * Evaluates one state.
+     *
+     * @param index the number of the state
+     * @return true if the condition of the state is satisfied
+     */
+    public boolean isSatisfied(final int index) {
+        return conditions[index].getAsBoolean();
+    }
+
+    /**
+     * Evaluates every state and reports the satisfied states of each item.
+     * Items with no satisfied states are not included.
+     *
+     * @return the satisfied states, by item
+     */
+    public Map<Item, List<State>> evaluate() {
+        Map<Item, List<State>> satisfied = new LinkedHashMap<>();
+        for (int i = 0; i < conditions.length; ++i)
+            if (conditions[i].getAsBoolean())
+                satisfied.computeIfAbsent(items.get(i), k -> new ArrayList<>()).add(states.get(i));
+        return satisfied;
+    }
+
+    // Accessors
+
+    /**
+     * @return the property tree that conditions are evaluated against
+     */
+    public PropertyTree getTree() {
+        return tree;
+    }
+
+    /**
+     * @return the states with conditions, in the order they are numbered
+     */
+    public List<State> getStates() {
+        return Collections.unmodifiableList(states);
+    }
+
+    /**
+     * Gets the item of a state.
+     *
+     * @param index the number of the state
+     * @return the item
+     */
+    public Item getItem(final int index) {
+        return items.get(index);
+    }
+
+}
@@ -16,12 +16,14 @@
  */
 package org.flightgear.clgen.listener;
 
+import java.util.Locale;
 import java.util.Map;
 
 import org.antlr.v4.runtime.Token;
 
 import org.flightgear.clgen.CLGenParser;
 import org.flightgear.clgen.ast.AbstractSyntaxTree;
+import org.flightgear.clgen.ast.AbstractSyntaxTree.Graph;
 import org.flightgear.clgen.ast.Check;
 import org.flightgear.clgen.ast.CheckContainer;
 import org.flightgear.clgen.ast.Checklist;
@@ -55,6 +57,7 @@ public class ChecklistListener extends AbstractListener {
      */
     public ChecklistListener(final Map<String, Item> items) {
         this.items = items;
+        items.values().forEach(ast::addItem);
     }
 
     @Override
@@ -72,6 +75,53 @@ public class ChecklistListener extends AbstractListener {
         ast.setWrapper("true".equals(ctx.getChild(2).getText()));
     }
 
+    @Override
+    public void enterCompact(final CLGenParser.CompactContext ctx) {
+        ast.setCompact("true".equals(ctx.getChild(2).getText()));
+    }
+
+    @Override
+    public void enterGraph(final CLGenParser.GraphContext ctx) {
+        String graph = unquote(ctx.getChild(2).getText());
+        try {
+            ast.setGraph(Graph.valueOf(graph.toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException e) {
+            Token token = (Token)ctx.getChild(2).getPayload();
+            error(token, "Graph '%s' is not one of single, split or clusters", graph);
+        }
+    }
+
+    @Override
+    public void enterXref(final CLGenParser.XrefContext ctx) {
+        ast.setXref("true".equals(ctx.getChild(2).getText()));
+    }
+
+    @Override
+    public void enterColumns(final CLGenParser.ColumnsContext ctx) {
+        String columns = ctx.getChild(2).getText();
+        if (columns.matches("[123]"))
+            ast.setColumns(Integer.parseInt(columns));
+        else {
+            Token token = (Token)ctx.getChild(2).getPayload();
+            error(token, "Columns must be 1, 2 or 3");
+        }
+    }
+
+    @Override
+    public void enterTemplate(final CLGenParser.TemplateContext ctx) {
+        String template = unquote(ctx.getChild(2).getText());
+        Token token = (Token)ctx.getChild(2).getPayload();
+        if (!template.endsWith(".vm") || template.length() == 3) {
+            error(token, "Template '%s' must be a .vm file", template);
+            return;
+        }
+        if (ast.getTemplates().contains(template)) {
+            error(token, "Duplicate template '%s'", template);
+            return;
+        }
+        ast.addTemplate(template);
+    }
+
     @Override
     public void enterChecklist(final CLGenParser.ChecklistContext ctx) {
         checklist = new Checklist(unquote(ctx.getChild(2).getText()));
@@ -130,13 +180,12 @@ public class ChecklistListener extends AbstractListener {
 
     @Override
     public void exitChecklist(final CLGenParser.ChecklistContext ctx) {
-        if (ast.getChecklists().contains(checklist)) {
+        if (!ast.addChecklist(checklist)) {
             Token token = (Token)ctx.getChild(0).getPayload();
             error(token, "Duplicate definition of checklist with title '%s' (ignoring case)",
                 checklist.getTitle()
             );
         }
-        ast.addChecklist(checklist);
     }
 
     // Accessors
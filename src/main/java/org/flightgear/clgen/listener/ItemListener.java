@@ -90,7 +90,7 @@ public class ItemListener extends AbstractListener {
             String scope = item == null ? SymbolTable.GLOBAL : item.getName();
             symbolTable.add(scope, new Symbol(key, value));
         } catch (DuplicateSymbolException e) {
-            Token token = (Token)ctx.getChild(0).getPayload();
+            Token token = ctx.identifier().getStart();
             error(token, "Alias '%s' is already defined in item '%s'",
                 key, item.getName()
             );
@@ -200,7 +200,7 @@ public class ItemListener extends AbstractListener {
         try {
             condition.resolveTypes();
         } catch (TypeException e) {
-            Token token = (Token)ctx.getChild(0).getChild(0).getPayload();
+            Token token = ctx.terminal().getStart();
             warning(token, e.getMessage());
         }
     }
@@ -231,7 +231,7 @@ public class ItemListener extends AbstractListener {
 
     @Override
     public void enterIdTerminal(final IdTerminalContext ctx) {
-        Symbol symbol = lookup((Token)ctx.getChild(0).getPayload());
+        Symbol symbol = lookup(ctx.identifier().getStart());
         conditions.peek().addChild(new Terminal(symbol));
     }
 
@@ -261,7 +261,7 @@ public class ItemListener extends AbstractListener {
 
     @Override
     public void enterAssignInt(final AssignIntContext ctx) {
-        Symbol symbol = lookup((Token)ctx.getChild(0).getPayload());
+        Symbol symbol = lookup(ctx.identifier().getStart());
         Integer value = Integer.parseInt(ctx.getChild(2).getText());
         ValueBinding binding = new ValueBinding(symbol, value);
         binding.setCondition(bindingCondition);
@@ -277,7 +277,7 @@ public class ItemListener extends AbstractListener {
 
     @Override
     public void enterAssignDouble(final AssignDoubleContext ctx) {
-        Symbol symbol = lookup((Token)ctx.getChild(0).getPayload());
+        Symbol symbol = lookup(ctx.identifier().getStart());
         Double value = Double.parseDouble(ctx.getChild(2).getText());
         ValueBinding binding = new ValueBinding(symbol, value);
         binding.setCondition(bindingCondition);
@@ -293,7 +293,7 @@ public class ItemListener extends AbstractListener {
 
     @Override
     public void enterAssignBool(final CLGenParser.AssignBoolContext ctx) {
-        Symbol symbol = lookup((Token)ctx.getChild(0).getPayload());
+        Symbol symbol = lookup(ctx.identifier().getStart());
         Boolean value = Boolean.parseBoolean(ctx.getChild(2).getText());
         ValueBinding binding = new ValueBinding(symbol, value);
         binding.setCondition(bindingCondition);
@@ -309,7 +309,7 @@ public class ItemListener extends AbstractListener {
 
     @Override
     public void enterAssignString(final AssignStringContext ctx) {
-        Symbol symbol = lookup((Token)ctx.getChild(0).getPayload());
+        Symbol symbol = lookup(ctx.identifier().getStart());
         String value = unquote(ctx.getChild(2).getText());
         ValueBinding binding = new ValueBinding(symbol, value);
         binding.setCondition(bindingCondition);
@@ -325,8 +325,8 @@ public class ItemListener extends AbstractListener {
 
     @Override
     public void enterAssignId(final AssignIdContext ctx) {
-        Symbol lval = lookup((Token)ctx.getChild(0).getPayload());
-        Symbol rval = lookup((Token)ctx.getChild(2).getPayload());
+        Symbol lval = lookup(ctx.identifier(0).getStart());
+        Symbol rval = lookup(ctx.identifier(1).getStart());
         PropertyBinding binding = new PropertyBinding(lval, rval);
         binding.setCondition(bindingCondition);
         state.addBinding(binding);
@@ -394,7 +394,7 @@ public class ItemListener extends AbstractListener {
     @Override
     public void enterIdParam(final IdParamContext ctx) {
         String n = ctx.getChild(0).getText();
-        Symbol symbol = lookup((Token)ctx.getChild(2).getPayload());
+        Symbol symbol = lookup(ctx.identifier(1).getStart());
         commandBinding.addParam(n, symbol);
     }
 
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.props;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.flightgear.clgen.ast.AbstractSyntaxTree;
+import org.flightgear.clgen.ast.Check;
+import org.flightgear.clgen.ast.Checklist;
+import org.flightgear.clgen.ast.Page;
+import org.flightgear.clgen.ast.State;
+import org.flightgear.clgen.eval.PropertyTree;
+import org.flightgear.clgen.eval.StateEvaluator;
+
+/**
+ * Monitors the checklists of a running simulator through the telnet
+ * property server.
+ * <p>
+ * Only the properties used by the conditions of the checklists are polled.
+ * The server is switched to data mode and the get commands for all of them
+ * are sent in batches without waiting for each reply, so a poll costs one
+ * round trip per batch rather than one per property. FlightGear replies to
+ * a get for a missing node with an empty value, so an empty value, like an
+ * error, is treated as not set.
+ *
+ * @author Richard Senior
+ */
+public class PropsMonitor implements AutoCloseable {
+
+    private static final int BATCH_SIZE = 256;
+
+    private final AbstractSyntaxTree ast;
+    private final PropertyTree tree = new PropertyTree();
+    private final StateEvaluator evaluator;
+    private final Map<State, Integer> numbers = new IdentityHashMap<>();
+    private final boolean[] satisfied;
+    private final List<byte[]> batches = new ArrayList<>();
+    private final List<int[]> slots = new ArrayList<>();
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+    /**
+     * Connects to a property server.
+     *
+     * @param ast the abstract syntax tree of the checklists
+     * @param host the host of the server
+     * @param port the port of the server
+     * @throws IOException if the server cannot be reached
+     */
+    public PropsMonitor(final AbstractSyntaxTree ast, final String host, final int port)
+            throws IOException {
+        this.ast = ast;
+        evaluator = new StateEvaluator(ast, tree);
+        satisfied = new boolean[evaluator.getStates().size()];
+        List<State> states = evaluator.getStates();
+        for (int i = 0; i < states.size(); ++i)
+            numbers.put(states.get(i), i);
+        List<String> paths = tree.getPaths();
+        for (int start = 0; start < paths.size(); start += BATCH_SIZE) {
+            int end = Math.min(paths.size(), start + BATCH_SIZE);
+            StringBuilder sb = new StringBuilder();
+            int[] s = new int[end - start];
+            for (int i = start; i < end; ++i) {
+                sb.append("get /").append(paths.get(i)).append("\r\n");
+                s[i - start] = i;
+            }
+            batches.add(sb.toString().getBytes(StandardCharsets.UTF_8));
+            slots.add(s);
+        }
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        in = new BufferedInputStream(socket.getInputStream());
+        out = new BufferedOutputStream(socket.getOutputStream());
+        skipPrompt();
+        out.write("data\r\n".getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    /**
+     * Polls the properties and evaluates the checklists.
+     *
+     * @throws IOException if the server cannot be read
+     */
+    public void poll() throws IOException {
+        for (int b = 0; b < batches.size(); ++b) {
+            out.write(batches.get(b));
+            out.flush();
+            for (int slot : slots.get(b)) {
+                String value = readLine();
+                if (value.isEmpty() || value.startsWith("-ERR"))
+                    tree.unset(slot);
+                else
+                    tree.set(slot, value);
+            }
+        }
+        evaluator.evaluate(satisfied);
+    }
+
+    /**
+     * Polls repeatedly, printing the state of the checklists whenever it
+     * changes. Only returns if the connection fails or the thread is
+     * interrupted.
+     *
+     * @param interval the time between polls, in milliseconds
+     * @param print the stream to print to
+     * @throws IOException if the server cannot be read
+     */
+    public void run(final long interval, final PrintStream print) throws IOException {
+        String last = null;
+        while (!Thread.currentThread().isInterrupted()) {
+            poll();
+            String status = status();
+            if (!status.equals(last))
+                print.println(status);
+            last = status;
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Describes the state of the checklists at the last poll. Each checklist
+     * is listed with the number of its checks that are satisfied, followed by
+     * its checks, marked with an x if they are satisfied.
+     *
+     * @return the description
+     */
+    public String status() {
+        StringBuilder sb = new StringBuilder();
+        for (Checklist checklist : ast.getChecklists()) {
+            StringBuilder checks = new StringBuilder();
+            int total = 0;
+            int done = 0;
+            for (Page page : checklist.getPages())
+                for (Check check : page.getChecks()) {
+                    Integer n = check.getState() != null ? numbers.get(check.getState()) : null;
+                    if (n == null)
+                        continue;
+                    ++total;
+                    if (satisfied[n])
+                        ++done;
+                    checks.append(String.format("    [%s] %s %s\n", satisfied[n] ? "x" : " ",
+                        check.getItem().getName(), check.getState().getName()
+                    ));
+                }
+            if (total > 0)
+                sb.append(String.format("%s (%d/%d)\n", checklist.getTitle(), done, total))
+                    .append(checks);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Whether the state of a check was satisfied at the last poll.
+     *
+     * @param check the check
+     * @return true if the state of the check has a condition that was true
+     */
+    public boolean isSatisfied(final Check check) {
+        Integer n = check.getState() != null ? numbers.get(check.getState()) : null;
+        return n != null && satisfied[n];
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    // Other methods
+
+    /*
+     * The server starts in prompt mode, so everything up to the first
+     * prompt is discarded before switching to data mode.
+     */
+    private void skipPrompt() throws IOException {
+        int previous = -1;
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (previous == '>' && c == ' ')
+                return;
+            previous = c;
+        }
+        throw new EOFException("Property server closed the connection");
+    }
+
+    private String readLine() throws IOException {
+        line.reset();
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (c == '\n')
+                break;
+            if (c != '\r')
+                line.write(c);
+        }
+        if (c < 0)
+            throw new EOFException("Property server closed the connection");
+        return new String(line.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+}
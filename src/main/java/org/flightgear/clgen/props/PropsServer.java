@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.props;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.flightgear.clgen.eval.PropertyTree;
+
+/**
+ * Stand-in for the FlightGear telnet property server.
+ * <p>
+ * Speaks enough of the "props" protocol for checklist tools to be tested
+ * without running FlightGear: get, set, data, prompt and quit. Properties
+ * are held in a property tree. A property that has never been set has an
+ * empty value and, in prompt mode, the type "none", as FlightGear reports a
+ * missing node.
+ * <p>
+ * The server only listens on the loopback interface. Each connection is
+ * handled on its own thread and access to the property tree is synchronized
+ * on the tree. Replies to pipelined commands are written together when
+ * there are no more commands waiting.
+ *
+ * @author Richard Senior
+ */
+public class PropsServer implements AutoCloseable {
+
+    private static final String PROMPT = "/> ";
+    private static final String TERMINATOR = "\r\n";
+
+    private final PropertyTree tree;
+    private final ServerSocket socket;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "props-server");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Constructs a server and starts listening.
+     *
+     * @param tree the property tree
+     * @param port the port, or 0 for any free port
+     * @throws IOException if the port cannot be opened
+     */
+    public PropsServer(final PropertyTree tree, final int port) throws IOException {
+        this.tree = tree;
+        this.socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        executor.execute(this::accept);
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+        executor.shutdownNow();
+    }
+
+    // Accessors
+
+    /**
+     * @return the port the server is listening on
+     */
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    // Other methods
+
+    private void accept() {
+        while (!socket.isClosed())
+            try {
+                Socket client = socket.accept();
+                executor.execute(() -> serve(client));
+            } catch (IOException e) {
+                // Closed
+            }
+    }
+
+    private void serve(final Socket client) {
+        try (Socket s = client) {
+            BufferedReader in = new BufferedReader(
+                new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8)
+            );
+            OutputStream out = new BufferedOutputStream(s.getOutputStream());
+            boolean data = false;
+            write(out, PROMPT);
+            out.flush();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] words = line.trim().split("\\s+", 3);
+                switch (words[0]) {
+                case "data":
+                    data = true;
+                    break;
+                case "prompt":
+                    data = false;
+                    break;
+                case "get":
+                    if (words.length > 1)
+                        write(out, get(words[1], data) + TERMINATOR);
+                    break;
+                case "set":
+                    if (words.length > 1) {
+                        String value = words.length > 2 ? words[2] : "";
+                        synchronized (tree) {
+                            tree.set(tree.slot(words[1]), value);
+                        }
+                        if (!data)
+                            write(out, get(words[1], false) + TERMINATOR);
+                    }
+                    break;
+                case "quit":
+                case "exit":
+                    out.flush();
+                    return;
+                case "":
+                    break;
+                default:
+                    write(out, "Unknown command: " + words[0] + TERMINATOR);
+                }
+                if (!data)
+                    write(out, PROMPT);
+                if (!in.ready())
+                    out.flush();
+            }
+        } catch (IOException e) {
+            // Client went away
+        }
+    }
+
+    private String get(final String path, final boolean data) {
+        synchronized (tree) {
+            int slot = tree.find(path);
+            String value = slot < 0 ? "" : tree.getString(slot);
+            String type = slot < 0 ? "none" : "string";
+            return data ? value : String.format("%s = '%s' (%s)", path, value, type);
+        }
+    }
+
+    private static void write(final OutputStream out, final String s) throws IOException {
+        out.write(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
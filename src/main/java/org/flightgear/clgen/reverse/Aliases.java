@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.reverse;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.flightgear.clgen.ast.Item;
+import org.flightgear.clgen.ast.State;
+import org.flightgear.clgen.ast.bindings.CommandBinding;
+import org.flightgear.clgen.ast.bindings.PropertyBinding;
+import org.flightgear.clgen.ast.bindings.ValueBinding;
+import org.flightgear.clgen.ast.conditions.Terminal;
+import org.flightgear.clgen.backend.AbstractVisitor;
+import org.flightgear.clgen.symbol.Symbol;
+
+/**
+ * Chooses aliases for the properties used by reverse engineered items.
+ * <p>
+ * A property used by more than one item gets a global alias in upper case
+ * and a property used by a single item gets an alias declared in the item.
+ * Aliases are made from the last element of the property path, with more
+ * of the path added to tell apart properties that end in the same way.
+ *
+ * @author Richard Senior
+ */
+class Aliases {
+
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+        "author", "check", "checklist", "columns", "compact", "false", "fgcommand",
+        "graph", "if", "item", "marker", "page", "project", "state", "template",
+        "text", "true", "wrapper", "xref"
+    ));
+
+    private final Map<String, String> globals = new LinkedHashMap<>();
+    private final Map<Item, Map<String, String>> locals = new IdentityHashMap<>();
+
+    /**
+     * Chooses aliases for the properties used by a collection of items.
+     *
+     * @param items the items
+     */
+    Aliases(final Collection<Item> items) {
+        Map<Item, Set<String>> paths = new IdentityHashMap<>();
+        Map<String, Integer> users = new HashMap<>();
+        for (Item item : items) {
+            Set<String> p = paths(item);
+            paths.put(item, p);
+            p.forEach(path -> users.merge(path, 1, Integer::sum));
+        }
+        Set<String> taken = new HashSet<>();
+        for (Item item : items)
+            for (String path : paths.get(item))
+                if (users.get(path) > 1 && !globals.containsKey(path))
+                    globals.put(path, name(path, true, taken));
+        for (Item item : items) {
+            Set<String> localTaken = new HashSet<>(taken);
+            Map<String, String> aliases = new LinkedHashMap<>();
+            for (String path : paths.get(item))
+                if (!globals.containsKey(path))
+                    aliases.put(path, name(path, false, localTaken));
+            locals.put(item, aliases);
+        }
+    }
+
+    /**
+     * Gets the alias for a property used by an item.
+     *
+     * @param item the item
+     * @param path the property path
+     * @return the alias
+     */
+    String alias(final Item item, final String path) {
+        String alias = globals.get(path);
+        return alias != null ? alias : locals.get(item).get(path);
+    }
+
+    // Accessors
+
+    /**
+     * @return the global aliases, keyed by property path
+     */
+    Map<String, String> getGlobals() {
+        return globals;
+    }
+
+    /**
+     * @param item the item
+     * @return the aliases declared in an item, keyed by property path
+     */
+    Map<String, String> getLocals(final Item item) {
+        return locals.get(item);
+    }
+
+    // Other methods
+
+    /*
+     * Finds the properties used by the states of an item, in order of
+     * state name.
+     */
+    private static Set<String> paths(final Item item) {
+        Set<String> paths = new LinkedHashSet<>();
+        AbstractVisitor visitor = new AbstractVisitor() {
+            @Override
+            public void enter(final Terminal terminal) {
+                if (terminal.getValue() instanceof Symbol)
+                    paths.add(((Symbol)terminal.getValue()).getExpansion());
+            }
+            @Override
+            public void enter(final ValueBinding binding) {
+                paths.add(binding.getSymbol().getExpansion());
+            }
+            @Override
+            public void enter(final PropertyBinding binding) {
+                paths.add(binding.getLval().getExpansion());
+                paths.add(binding.getRval().getExpansion());
+            }
+            @Override
+            public void enter(final CommandBinding binding) {
+                for (Object value : binding.getParams().values())
+                    if (value instanceof Symbol)
+                        paths.add(((Symbol)value).getExpansion());
+            }
+        };
+        for (State state : new TreeMap<>(item.getStates()).values())
+            state.accept(visitor);
+        return paths;
+    }
+
+    /*
+     * Makes a unique alias from the end of a property path, using as few
+     * elements of the path as possible.
+     */
+    private static String name(final String path, final boolean global, final Set<String> taken) {
+        String[] parts = path.replaceAll("^/+|/+$", "").split("/+");
+        String candidate = null;
+        for (int n = 1; n <= parts.length; ++n) {
+            candidate = identifier(String.join("-",
+                Arrays.copyOfRange(parts, parts.length - n, parts.length)
+            ), global);
+            if (valid(candidate) && taken.add(candidate))
+                return candidate;
+        }
+        String base = valid(candidate) ? candidate : global ? "PROPERTY" : "property";
+        for (int i = 2; ; ++i)
+            if (taken.add(base + "-" + i))
+                return base + "-" + i;
+    }
+
+    private static String identifier(final String s, final boolean global) {
+        String id = s
+            .replaceAll("[^-A-Za-z_0-9]+", "-")
+            .replaceAll("-+", "-")
+            .replaceAll("^-|-$", "");
+        return global ? id.toUpperCase(Locale.ROOT) : id;
+    }
+
+    /**
+     * Whether a name is a keyword of the checklist language, and so cannot
+     * be used as an alias or the name of a command parameter.
+     *
+     * @param name the name
+     * @return true if the name is a keyword
+     */
+    static boolean keyword(final String name) {
+        return KEYWORDS.contains(name);
+    }
+
+    private static boolean valid(final String id) {
+        return id != null && !id.isEmpty() && !Character.isDigit(id.charAt(0)) && !KEYWORDS.contains(id);
+    }
+
+}
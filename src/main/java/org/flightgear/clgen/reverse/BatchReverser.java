@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.reverse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.flightgear.clgen.GeneratorException;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Reverse engineers every checklist file in a directory tree.
+ * <p>
+ * A checklist file is an XML file with checklist elements directly inside
+ * its root element, whether the checklists are defined in the file or
+ * included from other files. Files that are included by another checklist
+ * file are reverse engineered as part of that file rather than on their
+ * own.
+ * <p>
+ * Each file is reverse engineered on a pool of workers, sharing SAX parsers
+ * and the threads that parse included files. The output for each file is
+ * written to a directory under the output directory with the relative path
+ * of the file, without the .xml extension. A summary of the results for
+ * each aircraft is written when all the files are complete. The aircraft
+ * is the first directory of the relative path.
+ *
+ * @author Richard Senior
+ */
+public class BatchReverser {
+
+    private final Path root;
+    private final Path outputDir;
+    private final SaxParserPool pool = new SaxParserPool();
+
+    /**
+     * Constructs a batch reverser.
+     *
+     * @param root the root of the directory tree
+     * @param outputDir the directory for the output
+     */
+    public BatchReverser(final Path root, final Path outputDir) {
+        this.root = root.toAbsolutePath().normalize();
+        this.outputDir = outputDir.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Runs the batch.
+     * <p>
+     * A file that cannot be read, either while looking for checklist files
+     * or while reverse engineering it, is reported as failed in the summary
+     * and the rest of the batch carries on.
+     *
+     * @return the number of files that failed
+     * @throws IOException if the directory tree cannot be read
+     */
+    public int run() throws IOException {
+        List<Result> results = new ArrayList<>();
+        List<Path> files = find(results);
+        int n = Runtime.getRuntime().availableProcessors();
+        ExecutorService workers = Executors.newFixedThreadPool(n);
+        ExecutorService includes = Executors.newFixedThreadPool(n);
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (Path file : files)
+                futures.add(workers.submit(() -> reverse(file, includes)));
+            for (Future<Result> future : futures)
+                results.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeneratorException(e);
+        } catch (ExecutionException e) {
+            throw new GeneratorException(e.getCause());
+        } finally {
+            workers.shutdown();
+            includes.shutdown();
+        }
+        results.sort(Comparator.comparing(r -> r.file));
+        return summarize(results);
+    }
+
+    // Other methods
+
+    /*
+     * Finds the checklist files in the tree that are not included by
+     * another checklist file. Files that cannot be scanned are added to the
+     * results as failures.
+     */
+    private List<Path> find(final List<Result> failures) throws IOException {
+        List<Path> candidates;
+        try (Stream<Path> paths = Files.walk(root)) {
+            candidates = paths
+                .filter(p -> p.toString().endsWith(".xml"))
+                .filter(Files::isRegularFile)
+                .sorted()
+                .collect(Collectors.toList());
+        }
+        List<Path> files = new ArrayList<>();
+        Set<Path> included = new HashSet<>();
+        for (Path candidate : candidates) {
+            Scanner scanner;
+            try {
+                scanner = scan(candidate);
+            } catch (IOException e) {
+                Result result = new Result(root.relativize(candidate));
+                // The message of a file system exception is only the path
+                result.errors.add("Cannot read file: " + e);
+                failures.add(result);
+                continue;
+            }
+            if (scanner.checklists) {
+                files.add(candidate);
+                included.addAll(scanner.includes);
+            }
+        }
+        files.removeIf(included::contains);
+        return files;
+    }
+
+    /*
+     * Scans the top level of a file for checklist elements and the files
+     * they include. Files that do not mention checklists, such as models,
+     * are not parsed at all.
+     */
+    private Scanner scan(final Path file) throws IOException {
+        Scanner scanner = new Scanner(file.getParent());
+        if (!MappedInput.contains(MappedInput.map(file), "<checklist"))
+            return scanner;
+        try {
+            pool.parse(file, scanner);
+        } catch (SAXException e) {
+            // Not well formed, so not a checklist file
+            scanner.checklists = false;
+        }
+        return scanner;
+    }
+
+    private Result reverse(final Path file, final ExecutorService includes) {
+        Path relative = root.relativize(file);
+        Result result = new Result(relative);
+        String name = relative.toString();
+        Path dir = outputDir.resolve(name.substring(0, name.length() - 4));
+        try {
+            Files.createDirectories(dir);
+            ChecklistParser parser = new ChecklistParser(file, dir, file.getParent(), pool, includes);
+            parser.run();
+            result.checklists = parser.getAst().getChecklists().size();
+            result.items = parser.getItems().size();
+            result.merged = parser.getMerged();
+            result.errors.addAll(parser.getErrors());
+        } catch (IOException | RuntimeException e) {
+            result.errors.add(e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+        return result;
+    }
+
+    /*
+     * Prints the results grouped by aircraft, returning the number of files
+     * that failed.
+     */
+    private int summarize(final List<Result> results) {
+        Map<String, List<Result>> aircraft = new TreeMap<>();
+        for (Result result : results)
+            aircraft.computeIfAbsent(result.aircraft(root), k -> new ArrayList<>()).add(result);
+        int failed = 0;
+        System.out.println();
+        for (Map.Entry<String, List<Result>> entry : aircraft.entrySet()) {
+            System.out.println(entry.getKey());
+            for (Result result : entry.getValue()) {
+                if (result.errors.isEmpty())
+                    System.out.format("    %s: %d checklist%s, %d item%s, %d merged\n",
+                        result.file,
+                        result.checklists, result.checklists != 1 ? "s" : "",
+                        result.items, result.items != 1 ? "s" : "",
+                        result.merged
+                    );
+                else {
+                    ++failed;
+                    System.out.format("    %s: FAILED\n", result.file);
+                    for (String error : result.errors)
+                        System.out.format("        %s\n", error);
+                }
+            }
+        }
+        System.out.format("Reversed %d file%s for %d aircraft, %d failed.\n",
+            results.size(), results.size() != 1 ? "s" : "", aircraft.size(), failed
+        );
+        return failed;
+    }
+
+    // Scanner
+
+    private static final class Scanner extends DefaultHandler {
+
+        private final Path dir;
+        private final Set<Path> includes = new HashSet<>();
+        private boolean checklists = false;
+        private int depth = 0;
+
+        Scanner(final Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        public void startElement(final String namespaceURI, final String localName,
+                final String qName, final Attributes atts) {
+            if (++depth == 2 && "checklist".equals(qName)) {
+                checklists = true;
+                String include = atts.getValue("include");
+                if (include != null)
+                    includes.add(dir.resolve(include).normalize());
+            }
+        }
+
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) {
+            --depth;
+        }
+
+    }
+
+    // Result
+
+    private static final class Result {
+
+        private final Path file;
+        private final List<String> errors = new ArrayList<>();
+        private int checklists = 0;
+        private int items = 0;
+        private int merged = 0;
+
+        Result(final Path file) {
+            this.file = file;
+        }
+
+        String aircraft(final Path root) {
+            if (file.getNameCount() > 1)
+                return file.getName(0).toString();
+            return root.getFileName() != null ? root.getFileName().toString() : root.toString();
+        }
+
+    }
+
+}
@@ -19,41 +19,98 @@ package org.flightgear.clgen.reverse;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.math.BigDecimal;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
+import org.flightgear.clgen.GeneratorException;
+import org.flightgear.clgen.ast.AbstractSyntaxTree;
 import org.flightgear.clgen.ast.Check;
 import org.flightgear.clgen.ast.Checklist;
 import org.flightgear.clgen.ast.Item;
 import org.flightgear.clgen.ast.Marker;
 import org.flightgear.clgen.ast.State;
+import org.flightgear.clgen.ast.bindings.AbstractBinding;
+import org.flightgear.clgen.ast.bindings.CommandBinding;
+import org.flightgear.clgen.ast.bindings.PropertyBinding;
+import org.flightgear.clgen.ast.bindings.ValueBinding;
+import org.flightgear.clgen.ast.conditions.AbstractCondition;
+import org.flightgear.clgen.ast.conditions.BinaryCondition;
+import org.flightgear.clgen.ast.conditions.Condition;
+import org.flightgear.clgen.ast.conditions.Operator;
+import org.flightgear.clgen.ast.conditions.Terminal;
+import org.flightgear.clgen.ast.conditions.UnaryCondition;
 import org.flightgear.clgen.backend.DotVisitor;
 import org.flightgear.clgen.backend.PdfVisitor;
+import org.flightgear.clgen.symbol.Symbol;
 import org.xml.sax.SAXException;
 
 /**
  * Reverse engineer checklists into CLGen input file.
+ * <p>
+ * Files included from a wrapper are parsed in parallel, each with its own
+ * delegate and a parser from a shared pool, and their contents are merged
+ * in the order of the includes. A file that is included more than once is
+ * only parsed once.
  *
  * @author Richard Senior
  */
 public class ChecklistParser extends AbstractXmlParser {
 
     private final Path input;
-    private final ChecklistParserDelegate delegate;
+    private final Path outputDir;
+    private final Path includeBase;
+    private final SaxParserPool pool;
+    private final ExecutorService sharedExecutor;
+    private ExecutorService executor;
+    private IncludeResolver includes;
+
+    private AbstractSyntaxTree ast;
+    private Map<String, Item> items;
+    private int merged;
+    private Map<State, List<String>> notes;
+    private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
 
     /**
      * Construct a CLRev instance with the path of an input file.
+     * <p>
+     * The output is written alongside the input file. Included files are
+     * found relative to the including file or, failing that, relative to
+     * the working directory.
      *
      * @param input the input file
      */
     public ChecklistParser(final Path input) {
+        this(input, input.toAbsolutePath().getParent(), Paths.get(""), new SaxParserPool(), null);
+    }
+
+    /**
+     * Constructs a checklist parser that shares its SAX parsers and threads
+     * with other checklist parsers.
+     *
+     * @param input the input file
+     * @param outputDir the directory for the output files
+     * @param includeBase the directory for included files that are not
+     * found relative to the including file
+     * @param pool the pool of SAX parsers
+     * @param executor the executor for parsing included files, or null to
+     * create one for this parser
+     */
+    ChecklistParser(final Path input, final Path outputDir, final Path includeBase,
+            final SaxParserPool pool, final ExecutorService executor) {
         this.input = input;
-        delegate = new ChecklistParserDelegate(this);
+        this.outputDir = outputDir;
+        this.includeBase = includeBase;
+        this.pool = pool;
+        this.sharedExecutor = executor;
     }
 
     /**
@@ -63,29 +120,106 @@ public class ChecklistParser extends AbstractXmlParser {
      */
     public void run() throws IOException {
         parse(input);
-        Path outputDir = input.toAbsolutePath().getParent();
         Path filename = Paths.get(outputDir.toString(), "checklists.clg");
         emit(filename);
-        delegate.getAst().accept(new DotVisitor(outputDir));
-        delegate.getAst().accept(new PdfVisitor(outputDir));
+        ast.accept(new DotVisitor(outputDir));
+        ast.accept(new PdfVisitor(outputDir, ast.getColumns()));
     }
 
     @Override
     protected void parse(final Path path) {
+        executor = sharedExecutor;
+        if (executor == null)
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+                Thread t = new Thread(r);
+                t.setDaemon(true);
+                return t;
+            });
+        includes = new IncludeResolver(includeBase,
+            p -> CompletableFuture.supplyAsync(() -> parseFile(p), executor)
+        );
+        try {
+            ChecklistParserDelegate.Assembly assembly = new ChecklistParserDelegate.Assembly();
+            parseFile(IncludeResolver.canonical(path)).replay(assembly);
+            ast = assembly.getAst();
+            items = assembly.getItems();
+            merged = assembly.getMerged();
+            notes = assembly.getNotes();
+        } finally {
+            if (executor != sharedExecutor)
+                executor.shutdown();
+        }
+    }
+
+    /**
+     * Starts parsing an included file in the background, unless it has
+     * already been included.
+     *
+     * @param including the path of the including file
+     * @param include the value of the include attribute
+     * @return the delegate that parsed the file, when it is complete
+     * @throws GeneratorException if the included file cannot be read
+     */
+    CompletableFuture<ChecklistParserDelegate> include(final Path including, final String include)
+            throws GeneratorException {
+        return includes.include(including, include);
+    }
+
+    // Accessors
+
+    /**
+     * @return the AST, once the input has been parsed
+     */
+    AbstractSyntaxTree getAst() {
+        return ast;
+    }
+
+    /**
+     * @return the items, once the input has been parsed
+     */
+    Map<String, Item> getItems() {
+        return items;
+    }
+
+    /**
+     * @return the number of checks whose item was merged into an item
+     * from an earlier check
+     */
+    int getMerged() {
+        return merged;
+    }
+
+    /**
+     * @return the errors from files that could not be parsed
+     */
+    List<String> getErrors() {
+        return errors;
+    }
+
+    // Other methods
+
+    private ChecklistParserDelegate parseFile(final Path path) {
+        ChecklistParserDelegate delegate = new ChecklistParserDelegate(this, path);
         try {
-            SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
-            SAXParser saxParser = saxParserFactory.newSAXParser();
-            saxParser.parse(path.toFile(), delegate);
-        } catch (IOException | ParserConfigurationException | SAXException e) {
-            e.printStackTrace();
+            pool.parse(path, delegate);
+        } catch (IOException | SAXException e) {
+            errors.add(String.format("%s: %s", path, e.getMessage()));
+            if (sharedExecutor == null)
+                e.printStackTrace();
         }
+        return delegate;
     }
 
     private void emit(final Path filename) throws IOException {
         try (PrintWriter out = new PrintWriter(new FileWriter(filename.toFile()))) {
-            for (Item item : delegate.getItems().values())
-                emitItem(out, item);
-            for (Checklist checklist : delegate.getAst().getChecklists())
+            Aliases aliases = new Aliases(items.values());
+            for (Entry<String, String> global : aliases.getGlobals().entrySet())
+                out.format("%s = %s;\n", global.getValue(), quote(global.getKey()));
+            if (!aliases.getGlobals().isEmpty())
+                out.println();
+            for (Item item : items.values())
+                emitItem(out, item, aliases);
+            for (Checklist checklist : ast.getChecklists())
                 emitChecklist(out, checklist);
         }
         System.out.println(filename.toAbsolutePath().normalize().toString());
@@ -115,16 +249,39 @@ public class ChecklistParser extends AbstractXmlParser {
             );
     }
 
-    private void emitItem(final PrintWriter out, final Item item) {
+    private void emitItem(final PrintWriter out, final Item item, final Aliases aliases) {
         out.format("item(%s) {\n", quote(item.getName()));
+        for (Entry<String, String> local : aliases.getLocals(item).entrySet())
+            out.format("    %s = %s;\n", local.getValue(), quote(local.getKey()));
         for (Entry<String, State> state : item.getStates().entrySet())
-            out.format("    state(%s);\n", quote(state.getValue().getName()));
+            emitState(out, item, state.getValue(), aliases);
         Marker marker = item.getMarker();
         if (marker != null)
             emitMarker(out, marker);
         out.println("}\n");
     }
 
+    private void emitState(final PrintWriter out, final Item item, final State state,
+            final Aliases aliases) {
+        for (String note : notes.getOrDefault(state, Collections.emptyList()))
+            out.format("    # %s\n", note);
+        Logic logic = new Logic(item, aliases);
+        String condition = state.getCondition() != null
+            ? ", " + logic.condition(state.getCondition())
+            : "";
+        List<AbstractBinding> bindings = state.getBindings();
+        if (bindings.size() <= 1)
+            out.format("    state(%s%s)%s;\n", quote(state.getName()), condition,
+                bindings.isEmpty() ? "" : " " + logic.binding(bindings.get(0))
+            );
+        else {
+            out.format("    state(%s%s) {\n", quote(state.getName()), condition);
+            for (AbstractBinding binding : bindings)
+                out.format("        %s;\n", logic.binding(binding));
+            out.println("    }");
+        }
+    }
+
     private void emitMarker(final PrintWriter out, final Marker marker) {
         out.format("    marker(%.4f, %.4f, %.4f, %.4f);\n",
             marker.getCoordinate().getX(),
@@ -134,4 +291,106 @@ public class ChecklistParser extends AbstractXmlParser {
         );
     }
 
+    // Conditions and bindings
+
+    /*
+     * Writes conditions and bindings in CLG syntax, using the aliases of an
+     * item for properties.
+     */
+    private final class Logic {
+
+        private final Item item;
+        private final Aliases aliases;
+
+        Logic(final Item item, final Aliases aliases) {
+            this.item = item;
+            this.aliases = aliases;
+        }
+
+        String condition(final AbstractCondition c) {
+            if (c instanceof Condition)
+                return condition(((Condition)c).getCondition());
+            if (c instanceof BinaryCondition) {
+                BinaryCondition b = (BinaryCondition)c;
+                Operator op = b.getOperator();
+                if (op == Operator.AND || op == Operator.OR)
+                    return String.format("%s %s %s",
+                        operand(b.getLhs(), op), symbol(op), operand(b.getRhs(), op)
+                    );
+                return String.format("%s %s %s",
+                    condition(b.getLhs()), symbol(op), condition(b.getRhs())
+                );
+            }
+            if (c instanceof UnaryCondition) {
+                UnaryCondition u = (UnaryCondition)c;
+                if (u.getOperator() == null)
+                    return condition(u.getOperand());
+                AbstractCondition operand = u.getOperand();
+                boolean simple = operand instanceof Terminal || operand instanceof UnaryCondition
+                    && ((UnaryCondition)operand).getOperator() == null;
+                return simple ? "!" + condition(operand) : "!(" + condition(operand) + ")";
+            }
+            return value(((Terminal)c).getValue());
+        }
+
+        /*
+         * Conjunctions bind more tightly than disjunctions, so only a
+         * disjunction inside a conjunction needs parentheses.
+         */
+        private String operand(final AbstractCondition c, final Operator op) {
+            String s = condition(c);
+            if (op == Operator.AND && c instanceof BinaryCondition
+                    && ((BinaryCondition)c).getOperator() == Operator.OR)
+                return "(" + s + ")";
+            return s;
+        }
+
+        String binding(final AbstractBinding binding) {
+            String action;
+            if (binding instanceof ValueBinding) {
+                ValueBinding b = (ValueBinding)binding;
+                action = String.format("%s = %s", value(b.getSymbol()), value(b.getValue()));
+            } else if (binding instanceof PropertyBinding) {
+                PropertyBinding b = (PropertyBinding)binding;
+                action = String.format("%s = %s", value(b.getLval()), value(b.getRval()));
+            } else {
+                CommandBinding b = (CommandBinding)binding;
+                StringBuilder sb = new StringBuilder("fgcommand(").append(quote(b.getCommand()));
+                for (Entry<String, Object> param : b.getParams().entrySet())
+                    sb.append(", ").append(param.getKey()).append('=').append(value(param.getValue()));
+                action = sb.append(')').toString();
+            }
+            if (binding.getCondition() != null)
+                return String.format("if (%s) %s", condition(binding.getCondition()), action);
+            return action;
+        }
+
+        private String value(final Object value) {
+            if (value instanceof Symbol)
+                return aliases.alias(item, ((Symbol)value).getExpansion());
+            if (value instanceof String)
+                return quote((String)value);
+            if (value instanceof Double) {
+                String s = new BigDecimal(value.toString()).toPlainString();
+                return s.contains(".") ? s : s + ".0";
+            }
+            return value.toString();
+        }
+
+        private String symbol(final Operator op) {
+            switch (op) {
+            case AND: return "&&";
+            case OR: return "||";
+            case NOT: return "!";
+            case EQ: return "==";
+            case NE: return "!=";
+            case GT: return ">";
+            case LT: return "<";
+            case GE: return ">=";
+            default: return "<=";
+            }
+        }
+
+    }
+
 }
@@ -17,11 +17,15 @@
 package org.flightgear.clgen.reverse;
 
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.flightgear.clgen.GeneratorException;
 import org.flightgear.clgen.ast.AbstractSyntaxTree;
@@ -30,56 +34,84 @@ import org.flightgear.clgen.ast.Checklist;
 import org.flightgear.clgen.ast.Item;
 import org.flightgear.clgen.ast.Marker;
 import org.flightgear.clgen.ast.State;
+import org.flightgear.clgen.ast.bindings.AbstractBinding;
+import org.flightgear.clgen.ast.conditions.Condition;
 import org.xml.sax.Attributes;
 import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * Delegate for the SAX parser that parses existing checklist XML files.
+ * <p>
+ * Each file is parsed by its own delegate, which records what it finds as
+ * a list of steps rather than adding to the abstract syntax tree directly.
+ * Included files are handed back to the parser as soon as they are seen,
+ * so that they can be parsed at the same time, and are recorded as a step
+ * that waits for the included file. Replaying the steps of the top level
+ * file into an {@link Assembly} then builds the same tree as parsing the
+ * files one after another, in the order of the includes. A file that is
+ * included more than once is replayed each time it is included, and files
+ * that include each other are reported as an error rather than replayed
+ * forever.
+ * <p>
+ * Only elements without child elements have text that matters, so text is
+ * collected in a single buffer that is cleared at the start of each element
+ * and ignored once a child element starts. Structural elements cost no
+ * allocation at all.
+ * <p>
+ * Conditions and bindings are passed to a {@link LogicBuilder} as they are
+ * parsed and attached to the state of the item when they are complete.
+ * Anything the builder cannot convert is kept as a note on the state.
  *
  * @author Richard Senior
  */
 class ChecklistParserDelegate extends DefaultHandler {
 
-    private final AbstractXmlParser parser;
-    private final Deque<StringBuilder> builderStack = new ArrayDeque<>();
+    private final ChecklistParser parser;
+    private final Path path;
+    private final StringBuilder text = new StringBuilder();
+    private boolean leaf = false;
+    private final List<Step> steps = new ArrayList<>();
 
-    private final AbstractSyntaxTree ast = new AbstractSyntaxTree();
-    private final Map<String, Item> items = new TreeMap<>();
-
-    private Checklist checklist;
     private Check check;
     private Item item;
     private State state;
     private Marker marker;
 
-    private boolean conditionOrBinding = false;
+    private final LogicBuilder logic = new LogicBuilder();
+    private int logicDepth = 0;
+    private List<String> notes;
 
     /**
      * Constructs a parser delegate with a reference back to its parser.
      *
      * @param parser the parent parser
+     * @param path the canonical path of the file this delegate parses
      */
-    public ChecklistParserDelegate(final AbstractXmlParser parser) {
+    public ChecklistParserDelegate(final ChecklistParser parser, final Path path) {
         this.parser = parser;
+        this.path = path;
     }
 
     @Override
     public void startElement(final String namespaceURI, final String localName,
             final String qName, final Attributes atts) {
-        builderStack.push(new StringBuilder());
+        text.setLength(0);
+        leaf = true;
+        if (logicDepth > 0 || "condition".equals(qName) || "binding".equals(qName)) {
+            ++logicDepth;
+            logic.start(qName, atts);
+            return;
+        }
         switch(qName) {
         case "checklist":
-            checklist = new Checklist();
+            steps.add(Assembly::startChecklist);
             processIncludes(atts);
             break;
         case "item":
             item = new Item();
             state = new State();
             check = new Check(item, state);
-            break;
-        case "condition":
-        case "binding":
-            conditionOrBinding = true;
+            notes = new ArrayList<>();
             break;
         case "marker":
             marker = new Marker();
@@ -90,22 +122,27 @@ class ChecklistParserDelegate extends DefaultHandler {
     @Override
     public void endElement(final String uri, final String localName,
             final String qName) {
-        final String s = builderStack.pop().toString();
+        final String s = leaf ? text.toString() : "";
+        leaf = false;
+        if (logicDepth > 0) {
+            --logicDepth;
+            if (logic.end(qName, s))
+                addLogic();
+            return;
+        }
         switch(qName) {
         case "checklist":
-            ast.addChecklist(checklist);
+            steps.add(Assembly::endChecklist);
             break;
         case "title":
-            checklist.setTitle(s);
+            steps.add(assembly -> assembly.title(s));
             break;
         case "item":
-            if (items.containsKey(item.getName()))
-                item = items.get(item.getName());
-            if (state.getName() != null && state.getName().trim().length() > 0) {
-                item.addState(state);
-                items.put(item.getName(), item);
-            }
-            checklist.addCheck(check);
+            final Check c = check;
+            final Item i = item;
+            final State st = state;
+            final List<String> n = notes;
+            steps.add(assembly -> assembly.check(c, i, st, n));
             break;
         case "name":
             item.setName(s);
@@ -113,13 +150,9 @@ class ChecklistParserDelegate extends DefaultHandler {
         case "value":
             if (state.getName() == null)
                 state.setName(s);
-            else if (!conditionOrBinding)
+            else
                 check.addAdditionalValue(s);
             break;
-        case "condition":
-        case "binding":
-            conditionOrBinding = false;
-            break;
         case "marker":
             item.setMarker(marker);
             break;
@@ -140,41 +173,156 @@ class ChecklistParserDelegate extends DefaultHandler {
 
     @Override
     public void characters(final char[] ch, final int start, final int length) {
-        if (!builderStack.isEmpty())
-            builderStack.peek().append(ch, start, length);
+        if (leaf)
+            text.append(ch, start, length);
     }
 
-    // Accessors
-
     /**
-     * @return the AST
+     * Replays the steps recorded for the file into an assembly, waiting for
+     * included files as they are reached.
+     *
+     * @param assembly the assembly
      */
-    public AbstractSyntaxTree getAst() {
-        return ast;
+    void replay(final Assembly assembly) {
+        assembly.enter(path);
+        steps.forEach(step -> step.apply(assembly));
+        assembly.leave();
     }
 
-    /**
-     * @return the items
+    // Other methods
+
+    /*
+     * Adds the condition or binding that has just ended to the current
+     * state, or a note if it could not be converted.
      */
-    public Map<String, Item> getItems() {
-        return items;
+    private void addLogic() {
+        if (state == null)
+            return;
+        Object result = logic.getResult();
+        if (result instanceof Condition)
+            state.setCondition((Condition)result);
+        else if (result instanceof AbstractBinding)
+            state.addBinding((AbstractBinding)result);
+        else
+            notes.add(logic.getUnsupported());
     }
 
-    // Other methods
-
     private void processIncludes(final Attributes atts) throws GeneratorException {
         for (int i = 0; i < atts.getLength(); ++i)
             if ("include".equals(atts.getQName(i))) {
-                Path path = Paths.get(atts.getValue(i));
-                if (path.toFile().canRead())
-                    parser.parse(path);
-                else {
-                    String message = String.format("Cannot read included file at path %s",
-                        path.toAbsolutePath().toString()
-                    );
-                    throw new GeneratorException(message);
-                }
+                CompletableFuture<ChecklistParserDelegate> included =
+                    parser.include(path, atts.getValue(i));
+                steps.add(assembly -> join(included).replay(assembly));
             }
     }
 
+    private static ChecklistParserDelegate join(final CompletableFuture<ChecklistParserDelegate> f) {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        void apply(Assembly assembly);
+    }
+
+    /**
+     * Builds the abstract syntax tree and the table of items from the steps
+     * recorded while parsing. Items with the same name in different checks
+     * are merged into one item with the states of each check.
+     */
+    static final class Assembly {
+
+        private final AbstractSyntaxTree ast = new AbstractSyntaxTree();
+        private final Map<String, Item> items = new TreeMap<>();
+
+        private final Map<State, List<String>> notes = new IdentityHashMap<>();
+        private final Deque<Path> files = new ArrayDeque<>();
+        private Checklist checklist;
+        private int merged = 0;
+
+        void enter(final Path file) throws GeneratorException {
+            if (files.contains(file)) {
+                StringBuilder cycle = new StringBuilder();
+                files.descendingIterator().forEachRemaining(f -> cycle.append(f).append(" -> "));
+                String message = String.format("Checklist files include each other: %s%s",
+                    cycle, file
+                );
+                throw new GeneratorException(message);
+            }
+            files.push(file);
+        }
+
+        void leave() {
+            files.pop();
+        }
+
+        void startChecklist() {
+            checklist = new Checklist();
+        }
+
+        void endChecklist() {
+            ast.addChecklist(checklist);
+        }
+
+        void title(final String title) {
+            checklist.setTitle(title);
+        }
+
+        void check(final Check check, final Item parsed, final State state,
+                final List<String> notes) {
+            if (!notes.isEmpty())
+                this.notes.put(state, notes);
+            Item item = parsed;
+            if (items.containsKey(parsed.getName())) {
+                item = items.get(parsed.getName());
+                ++merged;
+            }
+            if (state.getName() != null && state.getName().trim().length() > 0) {
+                item.addState(state);
+                items.put(item.getName(), item);
+                ast.addItem(item);
+            }
+            checklist.addCheck(check);
+        }
+
+        // Accessors
+
+        /**
+         * @return the AST
+         */
+        AbstractSyntaxTree getAst() {
+            return ast;
+        }
+
+        /**
+         * @return the items
+         */
+        Map<String, Item> getItems() {
+            return items;
+        }
+
+        /**
+         * @return notes about conditions and bindings that could not be
+         * converted, by state
+         */
+        Map<State, List<String>> getNotes() {
+            return notes;
+        }
+
+        /**
+         * @return the number of checks whose item was merged into an item
+         * from an earlier check
+         */
+        int getMerged() {
+            return merged;
+        }
+
+    }
+
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.reverse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.flightgear.clgen.GeneratorException;
+
+/**
+ * Resolves the include attributes of checklist files.
+ * <p>
+ * As in FlightGear, an included file is found relative to the directory of
+ * the file that includes it. If it is not found there, it is looked for
+ * relative to a base directory instead.
+ * <p>
+ * Each file is parsed once, however many times it is included. Parsed files
+ * are cached by their canonical path, so a file included by several others,
+ * or by different relative paths, shares the same parsed content.
+ *
+ * @author Richard Senior
+ */
+class IncludeResolver {
+
+    private final Path base;
+    private final Function<Path, CompletableFuture<ChecklistParserDelegate>> parser;
+    private final Map<Path, CompletableFuture<ChecklistParserDelegate>> parsed =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Constructs an include resolver.
+     *
+     * @param base the directory to fall back to for included files
+     * @param parser starts parsing a file, given its canonical path
+     */
+    IncludeResolver(final Path base,
+            final Function<Path, CompletableFuture<ChecklistParserDelegate>> parser) {
+        this.base = base;
+        this.parser = parser;
+    }
+
+    /**
+     * Gets the parsed content of an included file, starting to parse it if
+     * it has not been included before.
+     *
+     * @param including the path of the including file
+     * @param include the value of the include attribute
+     * @return the delegate that parsed the file, when it is complete
+     * @throws GeneratorException if the included file cannot be read
+     */
+    CompletableFuture<ChecklistParserDelegate> include(final Path including, final String include)
+            throws GeneratorException {
+        return parsed.computeIfAbsent(resolve(including, include), parser);
+    }
+
+    /**
+     * Resolves the canonical path of an included file.
+     *
+     * @param including the path of the including file
+     * @param include the value of the include attribute
+     * @return the canonical path of the included file
+     * @throws GeneratorException if the included file cannot be read
+     */
+    Path resolve(final Path including, final String include) throws GeneratorException {
+        Path relative = including.toAbsolutePath().getParent().resolve(include);
+        Path path = Files.isReadable(relative) ? relative : base.resolve(include);
+        if (!Files.isReadable(path)) {
+            String message = String.format("Cannot read included file at path %s",
+                relative.normalize().toString()
+            );
+            throw new GeneratorException(message);
+        }
+        return canonical(path);
+    }
+
+    /**
+     * Gets the canonical path of a file, following symbolic links where the
+     * file exists.
+     *
+     * @param path the path
+     * @return the canonical path
+     */
+    static Path canonical(final Path path) {
+        try {
+            return path.toRealPath();
+        } catch (IOException e) {
+            return path.toAbsolutePath().normalize();
+        }
+    }
+
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.reverse;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.flightgear.clgen.ast.bindings.AbstractBinding;
+import org.flightgear.clgen.ast.bindings.CommandBinding;
+import org.flightgear.clgen.ast.bindings.PropertyBinding;
+import org.flightgear.clgen.ast.bindings.ValueBinding;
+import org.flightgear.clgen.ast.conditions.AbstractCondition;
+import org.flightgear.clgen.ast.conditions.BinaryCondition;
+import org.flightgear.clgen.ast.conditions.Condition;
+import org.flightgear.clgen.ast.conditions.Operator;
+import org.flightgear.clgen.ast.conditions.Terminal;
+import org.flightgear.clgen.ast.conditions.UnaryCondition;
+import org.flightgear.clgen.symbol.Symbol;
+import org.xml.sax.Attributes;
+
+/**
+ * Builds conditions and bindings from the SAX events of a condition or
+ * binding element in a checklist XML file.
+ * <p>
+ * Each element is converted as soon as it ends, from the nodes already
+ * built for its children, so only the elements that are open at the time
+ * are held in memory. Properties become symbols with no identifier; the
+ * aliases are chosen when the CLG file is written.
+ * <p>
+ * Elements that have no equivalent in CLG, such as the arithmetic elements
+ * of FlightGear conditions, make the whole condition or binding
+ * unsupported. The builder then produces a note explaining why, rather
+ * than part of the condition, which would change its meaning.
+ *
+ * @author Richard Senior
+ */
+class LogicBuilder {
+
+    private final Deque<Node> open = new ArrayDeque<>();
+    private Object result = null;
+    private String unsupported = null;
+
+    /**
+     * Starts an element.
+     *
+     * @param name the element name
+     * @param atts the attributes of the element
+     */
+    void start(final String name, final Attributes atts) {
+        if (open.isEmpty()) {
+            result = null;
+            unsupported = null;
+        }
+        open.push(new Node(name, atts.getValue("type")));
+    }
+
+    /**
+     * Ends an element.
+     *
+     * @param name the element name
+     * @param text the text content of the element
+     * @return true if this ends the condition or binding
+     */
+    boolean end(final String name, final String text) {
+        Node node = open.pop();
+        Object built = build(node, text);
+        if (open.isEmpty()) {
+            result = built;
+            return true;
+        }
+        Node parent = open.peek();
+        parent.children.add(built);
+        parent.names.add(name);
+        parent.texts.add(text);
+        parent.types.add(node.type);
+        return false;
+    }
+
+    /**
+     * @return the condition or binding that was built, or null if it was
+     * not supported
+     */
+    Object getResult() {
+        return unsupported == null ? result : null;
+    }
+
+    /**
+     * @return why the condition or binding was not supported, or null if it
+     * was supported
+     */
+    String getUnsupported() {
+        return unsupported;
+    }
+
+    // Other methods
+
+    private Object build(final Node node, final String text) {
+        // Parameters of a binding are converted with the binding
+        if (!open.isEmpty() && "binding".equals(open.peek().name) && !"condition".equals(node.name))
+            return node.children.isEmpty() ? null : unsupported(node.name);
+        switch (node.name) {
+        case "condition":
+            Condition condition = new Condition();
+            condition.addChild(all(node, Operator.AND));
+            return condition;
+        case "binding":
+            return binding(node);
+        case "and":
+            return all(node, Operator.AND);
+        case "or":
+            return all(node, Operator.OR);
+        case "not":
+            UnaryCondition not = new UnaryCondition(Operator.NOT);
+            not.addChild(all(node, Operator.AND));
+            return not;
+        case "equals":
+            return comparison(node, Operator.EQ);
+        case "not-equals":
+            return comparison(node, Operator.NE);
+        case "less-than":
+            return comparison(node, Operator.LT);
+        case "greater-than":
+            return comparison(node, Operator.GT);
+        case "less-than-equals":
+            return comparison(node, Operator.LE);
+        case "greater-than-equals":
+            return comparison(node, Operator.GE);
+        case "property":
+            return new Terminal(new Symbol(null, text.trim()));
+        case "value":
+            return new Terminal(value(text, node.type));
+        default:
+            return unsupported(node.name);
+        }
+    }
+
+    /*
+     * Combines the children of an element with an operator, from the left.
+     * Properties that are tested on their own are wrapped in a unary
+     * condition, as they are by the compiler.
+     */
+    private AbstractCondition all(final Node node, final Operator operator) {
+        AbstractCondition combined = null;
+        for (Object child : node.children) {
+            if (!(child instanceof AbstractCondition))
+                return unsupported(node.name);
+            AbstractCondition c = (AbstractCondition)child;
+            if (c instanceof Terminal) {
+                UnaryCondition test = new UnaryCondition();
+                test.addChild(c);
+                c = test;
+            }
+            if (combined == null)
+                combined = c;
+            else {
+                BinaryCondition binary = new BinaryCondition(operator);
+                binary.addChild(combined);
+                binary.addChild(c);
+                combined = binary;
+            }
+        }
+        return combined != null ? combined : unsupported(node.name);
+    }
+
+    private AbstractCondition comparison(final Node node, final Operator operator) {
+        if (node.children.size() != 2)
+            return unsupported(node.name);
+        for (Object child : node.children)
+            if (!(child instanceof Terminal))
+                return unsupported(node.name);
+        BinaryCondition comparison = new BinaryCondition(operator);
+        comparison.addChild((Terminal)node.children.get(0));
+        comparison.addChild((Terminal)node.children.get(1));
+        return comparison;
+    }
+
+    /*
+     * Converts a binding. A property assignment becomes a value or property
+     * binding and any other command becomes a command binding with its
+     * parameters in order. Parameters whose names start with "property" are
+     * treated as properties. Parameters named after keywords, such as text,
+     * cannot be written as fgcommand parameters.
+     */
+    private AbstractBinding binding(final Node node) {
+        String command = null;
+        Condition condition = null;
+        List<String> names = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        for (int i = 0; i < node.names.size(); ++i) {
+            String name = node.names.get(i);
+            Object child = node.children.get(i);
+            if ("command".equals(name))
+                command = node.texts.get(i).trim();
+            else if ("condition".equals(name) && child instanceof Condition)
+                condition = (Condition)child;
+            else if (child != null || !name.matches("[-A-Za-z_][-A-Za-z_0-9]*")
+                    || Aliases.keyword(name))
+                return unsupported(name, "binding");
+            else {
+                String text = node.texts.get(i);
+                names.add(name);
+                values.add(name.startsWith("property")
+                    ? new Symbol(null, text.trim())
+                    : value(text, node.types.get(i))
+                );
+            }
+        }
+        if (command == null)
+            return unsupported("binding");
+        AbstractBinding binding = "property-assign".equals(command)
+            ? assignment(names, values)
+            : command(command, names, values);
+        if (binding != null)
+            binding.setCondition(condition);
+        return binding;
+    }
+
+    private AbstractBinding assignment(final List<String> names, final List<Object> values) {
+        if (names.size() != 2 || !"property".equals(names.get(0)))
+            return unsupported("property-assign");
+        Symbol lval = (Symbol)values.get(0);
+        if ("property".equals(names.get(1)))
+            return new PropertyBinding(lval, (Symbol)values.get(1));
+        if ("value".equals(names.get(1)))
+            return new ValueBinding(lval, values.get(1));
+        return unsupported("property-assign");
+    }
+
+    private AbstractBinding command(final String command, final List<String> names,
+            final List<Object> values) {
+        Set<String> seen = new HashSet<>();
+        CommandBinding binding = new CommandBinding(command);
+        for (int i = 0; i < names.size(); ++i) {
+            if (!seen.add(names.get(i)))
+                return unsupported(command);
+            binding.addParam(names.get(i), values.get(i));
+        }
+        return binding;
+    }
+
+    /**
+     * Converts the text of a value to an object of its type. Values with no
+     * type attribute are integers or doubles if they look like numbers and
+     * strings otherwise.
+     *
+     * @param text the text of the value
+     * @param type the type attribute, or null
+     * @return the value
+     */
+    static Object value(final String text, final String type) {
+        String s = text.trim();
+        try {
+            if (type == null) {
+                if (s.matches("-?[0-9]{1,9}"))
+                    return Integer.valueOf(s);
+                if (s.matches("-?([0-9]+\\.?[0-9]*|\\.[0-9]+)([eE][-+]?[0-9]+)?"))
+                    return Double.valueOf(s);
+                return text;
+            }
+            switch (type) {
+            case "string":
+                return text;
+            case "bool":
+                return "true".equals(s) || "1".equals(s);
+            case "int":
+            case "long":
+                return Integer.valueOf(s);
+            case "double":
+            case "float":
+                return Double.valueOf(s);
+            default:
+                return text;
+            }
+        } catch (NumberFormatException e) {
+            return text;
+        }
+    }
+
+    private <T> T unsupported(final String name) {
+        return unsupported(name, open.isEmpty() ? name : open.getLast().name);
+    }
+
+    private <T> T unsupported(final String name, final String parent) {
+        if (unsupported == null)
+            unsupported = String.format("<%s> in <%s> is not supported", name, parent);
+        return null;
+    }
+
+    // Node
+
+    /*
+     * An open element, with the nodes built for the children that have
+     * ended so far.
+     */
+    private static final class Node {
+
+        final String name;
+        final String type;
+        final List<Object> children = new ArrayList<>();
+        final List<String> names = new ArrayList<>();
+        final List<String> texts = new ArrayList<>();
+        final List<String> types = new ArrayList<>();
+
+        Node(final String name, final String type) {
+            this.name = name;
+            this.type = type;
+        }
+
+    }
+
+}
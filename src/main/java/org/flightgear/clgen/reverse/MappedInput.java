@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.reverse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Input files read through a memory mapping.
+ * <p>
+ * Large files are mapped rather than read, so that the parser reads them
+ * straight from the page cache without copying them through intermediate
+ * buffers. Small files are not worth the cost of setting up a mapping and
+ * are read into a heap buffer instead.
+ *
+ * @author Richard Senior
+ */
+final class MappedInput {
+
+    private static final long MAP_THRESHOLD = 64 * 1024;
+
+    private MappedInput() {}
+
+    /**
+     * Maps a file, or reads it if it is small.
+     *
+     * @param path the path of the file
+     * @return a buffer with the content of the file
+     * @throws IOException if the file cannot be read
+     */
+    static ByteBuffer map(final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD)
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return ByteBuffer.wrap(Files.readAllBytes(path));
+        }
+    }
+
+    /**
+     * Whether a buffer contains a sequence of ASCII characters. The buffer
+     * is searched in place, without decoding it.
+     *
+     * @param buffer the buffer
+     * @param s the characters to look for
+     * @return true if the buffer contains the characters
+     */
+    static boolean contains(final ByteBuffer buffer, final String s) {
+        int n = s.length();
+        int last = buffer.limit() - n;
+        char first = s.charAt(0);
+        for (int i = buffer.position(); i <= last; ++i) {
+            if (buffer.get(i) != first)
+                continue;
+            int j = 1;
+            while (j < n && buffer.get(i + j) == s.charAt(j))
+                ++j;
+            if (j == n)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Creates an input stream that reads a buffer from its position to its
+     * limit. The buffer itself is not changed.
+     *
+     * @param buffer the buffer
+     * @return the input stream
+     */
+    static InputStream stream(final ByteBuffer buffer) {
+        return new BufferInputStream(buffer.duplicate());
+    }
+
+    private static final class BufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        BufferInputStream(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (len == 0)
+                return 0;
+            if (!buffer.hasRemaining())
+                return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public long skip(final long n) {
+            int skipped = (int)Math.min(Math.max(n, 0), buffer.remaining());
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+    }
+
+}
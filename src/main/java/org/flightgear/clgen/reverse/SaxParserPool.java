@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2017 Richard Senior
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.flightgear.clgen.reverse;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Pool of SAX parsers.
+ * <p>
+ * SAX parsers are not thread safe but can be reset and reused. The pool
+ * hands out a parser to each thread that needs one, creating parsers from
+ * a single factory only when no idle parser is available, so that parsing
+ * many files from several threads costs no more parsers than there are
+ * threads.
+ *
+ * @author Richard Senior
+ */
+class SaxParserPool {
+
+    private final SAXParserFactory factory = SAXParserFactory.newInstance();
+    private final Queue<SAXParser> idle = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Parses a file with a parser from the pool.
+     * <p>
+     * The file is memory mapped if it is large. Its URI is given to the
+     * parser as the system identifier, so that anything the file refers to
+     * is still found relative to it.
+     *
+     * @param path the path of the file
+     * @param handler the handler for the parser events
+     * @throws IOException if the file cannot be read
+     * @throws SAXException if the file cannot be parsed
+     */
+    void parse(final Path path, final DefaultHandler handler) throws IOException, SAXException {
+        SAXParser parser = borrow();
+        try {
+            InputSource source = new InputSource(MappedInput.stream(MappedInput.map(path)));
+            source.setSystemId(path.toUri().toString());
+            parser.parse(source, handler);
+        } finally {
+            parser.reset();
+            idle.add(parser);
+        }
+    }
+
+    // Other methods
+
+    private SAXParser borrow() throws SAXException {
+        SAXParser parser = idle.poll();
+        if (parser != null)
+            return parser;
+        synchronized (factory) {
+            try {
+                return factory.newSAXParser();
+            } catch (ParserConfigurationException e) {
+                throw new SAXException(e);
+            }
+        }
+    }
+
+}
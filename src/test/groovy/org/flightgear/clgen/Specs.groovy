@@ -0,0 +1,44 @@
+package org.flightgear.clgen
+
+import org.antlr.v4.runtime.CharStreams
+import org.antlr.v4.runtime.CommonTokenStream
+import org.antlr.v4.runtime.tree.ParseTreeWalker
+import org.flightgear.clgen.ast.AbstractSyntaxTree
+import org.flightgear.clgen.ast.Item
+import org.flightgear.clgen.listener.ChecklistListener
+import org.flightgear.clgen.listener.ItemListener
+
+/**
+ * Parses checklist specifications for tests.
+ */
+class Specs {
+
+    /**
+     * Parses the items of a specification, sorted by name.
+     */
+    static List<Item> items(String spec) {
+        itemListener(parse(spec)).items.values().sort { it.name }
+    }
+
+    /**
+     * Parses a specification into an abstract syntax tree.
+     */
+    static AbstractSyntaxTree ast(String spec) {
+        def context = parse(spec)
+        def checklists = new ChecklistListener(itemListener(context).items)
+        ParseTreeWalker.DEFAULT.walk(checklists, context)
+        checklists.AST
+    }
+
+    private static parse(String spec) {
+        def lexer = new CLGenLexer(CharStreams.fromString(spec))
+        new CLGenParser(new CommonTokenStream(lexer)).specification()
+    }
+
+    private static ItemListener itemListener(context) {
+        def listener = new ItemListener()
+        ParseTreeWalker.DEFAULT.walk(listener, context)
+        listener
+    }
+
+}
@@ -0,0 +1,39 @@
+package org.flightgear.clgen.ast
+
+import spock.lang.Specification
+
+class TestAbstractSyntaxTree extends Specification {
+
+    def "Check that a checklist can be looked up by title ignoring case"() {
+        given:  def ast = new AbstractSyntaxTree()
+        and:    def checklist = new Checklist("Before Takeoff")
+        when:   ast.addChecklist(checklist)
+        then:   ast.getChecklist("Before Takeoff").is(checklist)
+        and:    ast.getChecklist("BEFORE TAKEOFF").is(checklist)
+        and:    ast.getChecklist("Landing") == null
+    }
+
+    def "Check that adding a duplicate checklist title is detected"() {
+        given:  def ast = new AbstractSyntaxTree()
+        and:    def first = new Checklist("Landing")
+        and:    def second = new Checklist("landing")
+        expect: ast.addChecklist(first)
+        and:    !ast.addChecklist(second)
+        and:    ast.checklists.size() == 2
+        and:    ast.getChecklist("LANDING").is(first)
+    }
+
+    def "Check that items and states can be looked up by name"() {
+        given:  def ast = new AbstractSyntaxTree()
+        and:    def item = new Item("Beacon")
+        and:    def state = new State("ON")
+        and:    item.addState(state)
+        expect: ast.addItem(item)
+        and:    !ast.addItem(new Item("Beacon"))
+        and:    ast.getItem("Beacon").is(item)
+        and:    ast.getState("Beacon", "ON").is(state)
+        and:    ast.getState("Beacon", "OFF") == null
+        and:    ast.getState("Strobe", "ON") == null
+    }
+
+}
@@ -4,4 +4,29 @@ import spock.lang.Specification
 
 class TestLicense extends Specification {
 
+    def "Check that no text is produced without a title and author"() {
+        given:  def license = new License("gpl2")
+        when:   license.title = "Checklists"
+        then:   license.text == null
+    }
+
+    def "Check that the text includes the title and author"() {
+        given:  def license = new License("gpl2")
+        when:   license.title = "Before Takeoff"
+        and:    license.author = "Joe Bloggs"
+        then:   license.text.contains("Before Takeoff")
+        and:    license.text.contains("Joe Bloggs")
+    }
+
+    def "Check that rendered text is shared between licenses"() {
+        given:  def first = new License("gpl2")
+        and:    def second = new License("gpl2")
+        and:    def other = new License("gpl2")
+        when:   [first, second, other]*.author = "Joe Bloggs"
+        and:    first.title = second.title = "Landing"
+        and:    other.title = "Shutdown"
+        then:   first.text.is(second.text)
+        and:    first.text != other.text
+    }
+
 }
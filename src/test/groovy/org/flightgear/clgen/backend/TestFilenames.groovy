@@ -0,0 +1,35 @@
+package org.flightgear.clgen.backend
+
+import org.flightgear.clgen.GeneratorException
+import org.flightgear.clgen.ast.Checklist
+
+import spock.lang.Specification
+
+class TestFilenames extends Specification {
+
+    def checklists(String... titles) {
+        titles.collect { new Checklist(it) }
+    }
+
+    def "Check that checklists with their own files pass"() {
+        when:   Filenames.check(checklists("Before Start", "After Start"), ".xml", "checklists.xml")
+        then:   notThrown(GeneratorException)
+    }
+
+    def "Check that two checklists written to the same file are rejected"() {
+        when:   Filenames.check(checklists("Before Start", "before start"), ".xml")
+        then:   GeneratorException e = thrown()
+        and:    e.message == "Checklists 'Before Start' and 'before start' would both be written to before-start.xml"
+    }
+
+    def "Check that a checklist written to a reserved file is rejected"() {
+        when:   Filenames.check(checklists("Checklists"), extension, reserved)
+        then:   GeneratorException e = thrown()
+        and:    e.message == "Checklist 'Checklists' would be written to ${reserved}, which is already used"
+        where:
+            extension   | reserved
+            ".xml"      | "checklists.xml"
+            ".dot"      | "checklists.dot"
+    }
+
+}
@@ -0,0 +1,82 @@
+package org.flightgear.clgen.backend
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+import org.flightgear.clgen.Specs
+
+import com.lowagie.text.pdf.PdfReader
+
+import spock.lang.Specification
+
+class TestIncrementalPdfVisitor extends Specification {
+
+    Path dir
+    Path cache
+
+    def setup() {
+        dir = Files.createTempDirectory("clgen")
+        cache = dir.resolve(".clgen-cache/pdf")
+    }
+
+    def cleanup() {
+        dir.toFile().deleteDir()
+    }
+
+    def ast(String... titles) {
+        Specs.ast("""
+            item("Battery") { state("ON"); }
+            ${titles.collect { "checklist(\"${it}\") { check(\"Battery\", \"ON\"); }" }.join("\n")}
+        """)
+    }
+
+    def generate(ast) {
+        ast.accept(new IncrementalPdfVisitor(dir, false))
+    }
+
+    def parts() {
+        cache.toFile().list().sort()
+    }
+
+    def pages(Path path) {
+        def reader = new PdfReader(path.toString())
+        try {
+            reader.numberOfPages
+        } finally {
+            reader.close()
+        }
+    }
+
+    def "Check that a part is cached for each checklist"() {
+        given:  def ast = ast("Before Start", "After Start")
+        when:   generate(ast)
+        then:   parts() == (0..1).collect { IncrementalPdfVisitor.key(ast, it) + ".pdf" }.sort()
+        and:    pages(dir.resolve("checklists.pdf")) == 2
+    }
+
+    def "Check that a damaged part is rendered again"() {
+        given:  def ast = ast("Before Start", "After Start")
+        and:    generate(ast)
+        and:    def part = cache.resolve(IncrementalPdfVisitor.key(ast, 1) + ".pdf")
+        when:   part.bytes = damage(part.bytes)
+        and:    generate(ast)
+        then:   pages(part) == 1
+        and:    pages(dir.resolve("checklists.pdf")) == 2
+        where:
+            damage << [
+                { new byte[0] },
+                { "not a PDF".bytes },
+                { byte[] b -> Arrays.copyOf(b, 20) }
+            ]
+    }
+
+    def "Check that parts no longer used are removed"() {
+        given:  generate(ast("Before Start", "After Start", "Shutdown"))
+        and:    def ast = ast("Before Start", "Shutdown")
+        and:    cache.resolve("notes.txt").text = "not a part"
+        when:   generate(ast)
+        then:   parts() == ((0..1).collect { IncrementalPdfVisitor.key(ast, it) + ".pdf" } + "notes.txt").sort()
+        and:    pages(dir.resolve("checklists.pdf")) == 2
+    }
+
+}
@@ -0,0 +1,59 @@
+package org.flightgear.clgen.backend
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+
+import org.flightgear.clgen.Specs
+
+import spock.lang.Specification
+
+class TestMultiXmlVisitor extends Specification {
+
+    static final Path EXPECTED = Paths.get("src/test/resources/org/flightgear/clgen/backend")
+
+    Path dir
+
+    def setup() {
+        dir = Files.createTempDirectory("clgen")
+    }
+
+    def cleanup() {
+        dir.toFile().deleteDir()
+    }
+
+    def example() {
+        Specs.ast(Paths.get("samples/Example/example.clg").getText("UTF-8"))
+    }
+
+    def xmlFiles(Path path) {
+        path.toFile().list().findAll { it.endsWith(".xml") }.sort()
+    }
+
+    /*
+     * Replaces the year and version in the license comment, which change
+     * from one run to the next.
+     */
+    def normalize(String xml) {
+        xml.replaceFirst(/Copyright \(c\) \d{4} /, "Copyright (c) YEAR ")
+            .replaceFirst(/Generated by CLGen \S+\./, "Generated by CLGen VERSION.")
+    }
+
+    def "Check that the XML for the example matches the expected output"() {
+        given:  def ast = example()
+        and:    ast.compact = compact
+        and:    def expected = EXPECTED.resolve(compact ? "example-compact" : "example")
+        when:   ast.accept(visitor(dir))
+        then:   xmlFiles(dir) == xmlFiles(expected)
+        and:    xmlFiles(expected).each {
+                    assert normalize(dir.resolve(it).getText("UTF-8")) == expected.resolve(it).getText("UTF-8")
+                }
+        where:
+            visitor                             | compact
+            { d -> new MultiXmlVisitor(d) }     | false
+            { d -> new ParallelXmlVisitor(d) }  | false
+            { d -> new MultiXmlVisitor(d) }     | true
+            { d -> new ParallelXmlVisitor(d) }  | true
+    }
+
+}
@@ -0,0 +1,73 @@
+package org.flightgear.clgen.backend
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+
+import spock.lang.Specification
+
+class TestOutputFile extends Specification {
+
+    Path dir
+
+    def setup() {
+        dir = Files.createTempDirectory("clgen")
+    }
+
+    def cleanup() {
+        dir.toFile().deleteDir()
+    }
+
+    def "Check that a new file is written"() {
+        given:  def path = dir.resolve("new.txt")
+        and:    def file = new OutputFile(path)
+        when:   file.write("hello".bytes)
+        and:    file.close()
+        then:   file.changed
+        and:    path.text == "hello"
+        and:    dir.toFile().list() == ["new.txt"]
+    }
+
+    def "Check that an unchanged file is not replaced"() {
+        given:  def path = dir.resolve("same.txt")
+        and:    path.text = "hello"
+        and:    Files.setLastModifiedTime(path, FileTime.fromMillis(0))
+        and:    def file = new OutputFile(path)
+        when:   file.write("hel".bytes)
+        and:    file.write("lo".bytes)
+        and:    file.close()
+        then:   !file.changed
+        and:    file.describe().endsWith("(unchanged)")
+        and:    Files.getLastModifiedTime(path).toMillis() == 0
+    }
+
+    def "Check that changed content replaces the file"() {
+        given:  def path = dir.resolve("changed.txt")
+        and:    path.text = existing
+        and:    def file = new OutputFile(path)
+        when:   file.write(content.bytes)
+        and:    file.close()
+        then:   file.changed
+        and:    path.text == content
+        and:    dir.toFile().list() == ["changed.txt"]
+        where:
+            existing    | content
+            "hello"     | "help"
+            "hello"     | "hello world"
+            "hello"     | "hell"
+            "hello"     | ""
+            ""          | "hello"
+    }
+
+    def "Check that an aborted file leaves the existing file alone"() {
+        given:  def path = dir.resolve("aborted.txt")
+        and:    path.text = "hello"
+        and:    def file = new OutputFile(path)
+        when:   file.write("goodbye".bytes)
+        and:    file.abort()
+        and:    file.close()
+        then:   path.text == "hello"
+        and:    dir.toFile().list() == ["aborted.txt"]
+    }
+
+}
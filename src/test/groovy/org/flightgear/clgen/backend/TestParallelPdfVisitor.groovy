@@ -0,0 +1,61 @@
+package org.flightgear.clgen.backend
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+import com.lowagie.text.Document
+import com.lowagie.text.PageSize
+import com.lowagie.text.Paragraph
+import com.lowagie.text.Rectangle
+import com.lowagie.text.pdf.PdfReader
+import com.lowagie.text.pdf.PdfWriter
+
+import spock.lang.Specification
+
+class TestParallelPdfVisitor extends Specification {
+
+    Path dir
+
+    def setup() {
+        dir = Files.createTempDirectory("clgen")
+    }
+
+    def cleanup() {
+        dir.toFile().deleteDir()
+    }
+
+    byte[] part(Rectangle pageSize) {
+        def out = new ByteArrayOutputStream()
+        def document = new Document(pageSize)
+        PdfWriter.getInstance(document, out)
+        document.open()
+        document.add(new Paragraph("Checklist"))
+        document.close()
+        out.toByteArray()
+    }
+
+    /*
+     * Finds the x coordinate of the page number, which is the last text
+     * placed on the page.
+     */
+    def pageNumberX(PdfReader reader, int n) {
+        def content = new String(reader.getPageContent(n), "ISO-8859-1")
+        def matcher = content =~ /([-\d.]+) ([-\d.]+) Tm/
+        matcher.size() > 0 ? matcher[-1][1] as float : null
+    }
+
+    def "Check that page numbers are centred on the page"() {
+        given:  def path = dir.resolve("checklists.pdf")
+        when:   ParallelPdfVisitor.merge([part(pageSize), part(pageSize)], path).close()
+        and:    def reader = new PdfReader(path.toString())
+        then:   reader.numberOfPages == 2
+        and:    (1..2).every { Math.abs(pageNumberX(reader, it) - width / 2) < 10 }
+        cleanup:
+            reader?.close()
+        where:
+            pageSize                | width
+            PageSize.A4             | 595
+            PageSize.A4.rotate()    | 842
+    }
+
+}
@@ -0,0 +1,28 @@
+package org.flightgear.clgen.backend
+
+import spock.lang.Specification
+
+class TestPdfLayout extends Specification {
+
+    def "Check that text wraps at spaces"() {
+        expect: PdfLayout.wrap(text, width) == lines
+        where:
+            text                    | width || lines
+            "Fuel pump"             | 20    || ["Fuel pump"]
+            "Fuel pump"             | 9     || ["Fuel pump"]
+            "Fuel pump"             | 8     || ["Fuel", "pump"]
+            "  Fuel   pump  "       | 20    || ["Fuel pump"]
+            "Left fuel pump"        | 10    || ["Left fuel", "pump"]
+            ""                      | 10    || [""]
+    }
+
+    def "Check that long words are broken"() {
+        expect: PdfLayout.wrap(text, width) == lines
+        where:
+            text                    | width || lines
+            "Magnetos"              | 3     || ["Mag", "net", "os"]
+            "Set magnetos"          | 4     || ["Set", "magn", "etos"]
+            "On magnetos"           | 5     || ["On", "magne", "tos"]
+    }
+
+}
@@ -29,4 +29,28 @@ class TestXmlPostProcessor extends Specification {
         expect: xpp.xml == '<tag1>\n\n<tag2>content</tag2>\n</tag1>\n'
     }
 
+    def "Check that post processing applies several patterns in one pass"() {
+        given:  def xpp = new XmlPostProcessor()
+        and:    xpp.addBreakPatterns('<a>', '</b>')
+        and:    xpp.xml = '<!-- c --><a><b>x</b><a></a></a>'
+        expect: xpp.xml == '<!-- c -->\n<a>\n<b>x</b>\n<a>\n</a></a>'
+    }
+
+    def "Check that post processing does not break overlapping matches twice"() {
+        given:  def xpp = new XmlPostProcessor()
+        and:    xpp.addBreakPatterns('aa')
+        and:    xpp.xml = 'aaa'
+        expect: xpp.xml == 'aa\na'
+    }
+
+    def "Check that the filter finds patterns split across writes"() {
+        given:  def xpp = new XmlPostProcessor()
+        and:    xpp.addBreakPatterns('<tag1>')
+        and:    def sw = new StringWriter()
+        and:    def w = xpp.filter(sw)
+        when:   ['<!-', '-><ta', 'g1', '>', '<tag', '1>x'].each { w.write(it) }
+        and:    w.close()
+        then:   sw.toString() == '<!-->\n<tag1>\n<tag1>\nx'
+    }
+
 }
@@ -0,0 +1,103 @@
+package org.flightgear.clgen.backend
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+import org.flightgear.clgen.Specs
+
+import spock.lang.Specification
+
+class TestXrefVisitor extends Specification {
+
+    Path dir
+
+    def setup() {
+        dir = Files.createTempDirectory("clgen")
+    }
+
+    def cleanup() {
+        dir.toFile().deleteDir()
+    }
+
+    def xref(String spec) {
+        Specs.ast(spec).accept(new XrefVisitor(dir))
+    }
+
+    def spec = """
+        item("Battery") {
+            volts = "systems/electrical/volts";
+            sw = "controls/battery";
+            state("ON", volts > 0) sw = 1;
+            state("OFF", volts == 0) fgcommand("property-assign", property=sw, value=0);
+        }
+        item("Throttle") {
+            t = "controls/throttle";
+            target = "sim/target";
+            state("SET", t == target) {
+                fgcommand("property-interpolate", property=t, value=target, rate=0.5);
+                t = target;
+            }
+        }
+        checklist("Before Start") {
+            check("Battery", "ON");
+            check("Throttle", "SET");
+            check("Battery", "OFF");
+            check("Battery", "ON");
+        }
+    """
+
+    def "Check that reads and writes are counted once per state"() {
+        when:   xref(spec)
+        then:   dir.resolve("checklists-xref.csv").text == """\
+property,reads,writes,reading states,writing states
+controls/throttle,1,2,1,1
+sim/target,3,0,1,0
+controls/battery,0,2,0,2
+systems/electrical/volts,2,0,2,0
+"""
+    }
+
+    def "Check that edges run from properties read to states and from states to properties written"() {
+        when:   xref(spec)
+        then:   dir.resolve("checklists-xref.dot").text == '''\
+digraph xref {
+    rankdir=LR;
+    node [fontsize=10,fontname="helvetica"];
+    node [shape=ellipse];
+    s0 [shape=box,style=rounded,label="Battery\\nON"];
+    p0 -> s0;
+    s0 -> p1;
+    s1 [shape=box,style=rounded,label="Throttle\\nSET"];
+    p2 -> s1;
+    s1 -> p2 [label="2"];
+    p3 -> s1 [label="3"];
+    s2 [shape=box,style=rounded,label="Battery\\nOFF"];
+    p0 -> s2;
+    s2 -> p1;
+    p0 [label="systems/electrical/volts\\nR 2/2 W 0/0"];
+    p1 [label="controls/battery\\nR 0/0 W 2/2"];
+    p2 [label="controls/throttle\\nR 1/1 W 2/1"];
+    p3 [label="sim/target\\nR 3/1 W 0/0"];
+}
+'''
+    }
+
+    def "Check that only command parameters named property are writes"() {
+        when:   xref("""
+                    item("X") {
+                        a = "a/b";
+                        state("ON") fgcommand("property-swap", ${name}=a);
+                    }
+                    checklist("C") { check("X", "ON"); }
+                """)
+        then:   dir.resolve("checklists-xref.csv").readLines()[1] == "a/b,${reads},${writes},${reads},${writes}"
+        where:
+            name            | reads | writes
+            "property"      | 0     | 1
+            "property1"     | 0     | 1
+            "property-dest" | 0     | 1
+            "value"         | 1     | 0
+            "offset"        | 1     | 0
+    }
+
+}
@@ -0,0 +1,56 @@
+package org.flightgear.clgen.eval
+
+import org.flightgear.clgen.Specs
+
+import spock.lang.Specification
+
+class TestBindingSimulator extends Specification {
+
+    def tree = new PropertyTree()
+    def simulator = new BindingSimulator(tree)
+
+    def "Check that bindings that satisfy their state pass"() {
+        expect: simulator.verify(Specs.items('''
+            item("Battery") {
+                b = "controls/battery";
+                s = "controls/source";
+                state("ON", b) b = true;
+                state("OFF", !b) {
+                    s = true;
+                    if (s) fgcommand("property-toggle", property=b);
+                    fgcommand("property-toggle", property=b);
+                }
+                state("SOURCE", b == s) b = s;
+                state("SET", b == 0.25) fgcommand("property-interpolate", property=b, value=0.25, time=2.0);
+                state("STEP", b > 1) fgcommand("property-adjust", property=b, step=2);
+            }
+        ''')).isEmpty()
+    }
+
+    def "Check that bindings that do not satisfy their state fail"() {
+        when:   def failures = simulator.verify(Specs.items('''
+            item("Lights") {
+                l = "controls/lights";
+                v = "systems/lights";
+                state("ON", v) l = true;
+                state("OFF", !l) fgcommand("switch-assign", property=l, value=true);
+            }
+        '''))
+        then:   failures.size() == 1
+        and:    failures[0].contains("'ON'")
+    }
+
+    def "Check that commands can be simulated by registered handlers"() {
+        given:  simulator.register("switch-assign", { t, params ->
+                    int slot = t.slot(params.property.expansion)
+                    return { t.set(slot, params.value) } as Runnable
+                } as CommandHandler)
+        expect: simulator.verify(Specs.items('''
+            item("Switch") {
+                s = "controls/switch";
+                state("ON", s) fgcommand("switch-assign", property=s, value=true);
+            }
+        ''')).isEmpty()
+    }
+
+}
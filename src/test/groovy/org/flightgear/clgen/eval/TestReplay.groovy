@@ -0,0 +1,96 @@
+package org.flightgear.clgen.eval
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+import org.flightgear.clgen.Specs
+
+import spock.lang.Specification
+
+class TestReplay extends Specification {
+
+    static final String SPEC = '''
+        item("Battery") {
+            b = "controls/electric/battery-switch";
+            state("ON", b);
+        }
+        item("Beacon") {
+            v = "systems/electrical/outputs/beacon";
+            state("ON", v > 12);
+        }
+        checklist("Before Start") {
+            check("Battery", "ON");
+            check("Beacon", "ON");
+        }
+    '''
+
+    Path dir
+    Replay replay
+
+    def setup() {
+        dir = Files.createTempDirectory("clgen")
+        replay = new Replay(Specs.ast(SPEC))
+    }
+
+    def cleanup() {
+        dir.toFile().deleteDir()
+    }
+
+    def run(String log) {
+        def path = dir.resolve("log.csv")
+        path.text = log
+        replay.run(path)
+    }
+
+    def intervals(Map map) {
+        map.values().collect { it*.toString() }
+    }
+
+    def "Check that intervals are found for checks and checklists"() {
+        when:   run('''\
+Time,/controls/electric/battery-switch,unused,systems/electrical/outputs/beacon
+0.0,0,x,0
+1.0,1,x,0
+2.0,1,x,13.5
+3.0,0,x,13.5
+4.0,1,x,13.5
+''')
+        then:   replay.samples == 5
+        and:    intervals(replay.checks) == [["1.0-3.0", "4.0-4.0"], ["2.0-4.0"]]
+        and:    intervals(replay.checklists) == [["2.0-3.0", "4.0-4.0"]]
+        and:    replay.missing.isEmpty()
+    }
+
+    def "Check that checks on every page are replayed"() {
+        given:  replay = new Replay(Specs.ast('''
+                    item("A") {
+                        a = "a";
+                        state("ON", a);
+                    }
+                    item("B") {
+                        b = "b";
+                        state("ON", b);
+                    }
+                    checklist("Two Pages") {
+                        page { check("A", "ON"); }
+                        page { check("B", "ON"); }
+                    }
+                '''))
+        and:    def out = new ByteArrayOutputStream()
+        when:   run("Time,a,b\n0.0,1,0\n1.0,1,0\n2.0,1,1\n")
+        and:    replay.report(new PrintStream(out, true))
+        then:   intervals(replay.checklists) == [["2.0-2.0"]]
+        and:    out.toString().readLines().drop(1) == [
+                    "Two Pages: 2.0-2.0",
+                    "    A ON: 0.0-2.0",
+                    "    B ON: 2.0-2.0"
+                ]
+    }
+
+    def "Check that samples are numbered when there is no time column"() {
+        when:   run("controls/electric/battery-switch\r\n0\r\ntrue\r\ntrue")
+        then:   intervals(replay.checks)[0] == ["1.0-2.0"]
+        and:    replay.missing == ["systems/electrical/outputs/beacon"]
+    }
+
+}
@@ -0,0 +1,130 @@
+package org.flightgear.clgen.eval
+
+import org.flightgear.clgen.Specs
+
+import spock.lang.Specification
+
+class TestStateAnalyzer extends Specification {
+
+    def analyzer = new StateAnalyzer()
+
+    def analyze(String spec) {
+        analyzer.analyze(Specs.items(spec).first())
+    }
+
+    def "Check that states covering every value without overlap pass"() {
+        expect: analyze("""
+            item("X") {
+                p = "a/b";
+                ${states}
+            }
+        """).empty
+        where:
+            states << [
+                'state("OFF", !p); state("ON", p);',
+                'state("LOW", p < 0.5); state("HIGH", p >= 0.5);',
+                'state("A", p == "x"); state("B", p != "x");',
+                'state("OFF", p == 0); state("ON", p == 1); state("SET");',
+                'state("A", p > 0 && q == "x"); state("B", p < 0 || q != "x");'
+            ]
+    }
+
+    def "Check that a state that can never be true is found"() {
+        when:   def messages = analyze("""
+                    item("X") {
+                        p = "a/b";
+                        state("A", ${condition});
+                    }
+                """)
+        then:   messages == ["state 'A' in item 'X' can never be true"]
+        where:
+            condition << [
+                'p > 1 && p < 0',
+                'p == 1 && p != 1',
+                'p && !p',
+                'p == "x" && p == "y"',
+                '!(p < 1 || p >= 1)'
+            ]
+    }
+
+    def "Check that states that can be true together are found"() {
+        when:   def messages = analyze("""
+                    item("X") {
+                        p = "a/b";
+                        q = "c/d";
+                        state("A", ${a});
+                        state("B", ${b});
+                    }
+                """)
+        then:   messages == ["states 'A' and 'B' in item 'X' can both be true"]
+        where:
+            a                   | b
+            'p > 0.36'          | 'p < 0.40'
+            'p > 0 || q'        | 'p < 2'
+            'p >= 0 && q'       | 'p <= 0'
+            'p <= 1'            | '!(p < 1)'
+    }
+
+    def "Check that states that are special cases or test other properties are not reported"() {
+        expect: analyze("""
+            item("X") {
+                p = "a/b";
+                q = "c/d";
+                state("A", ${a});
+                state("B", ${b});
+            }
+        """).empty
+        where:
+            a                           | b
+            'p == 0'                    | 'p == 0 && q'
+            'p || q'                    | 'p && q'
+            'p > 0.36 && p < 0.40'      | 'p > 0.36 && p < 0.40'
+            'p > 0'                     | 'q'
+            'p > 0 || q'                | 'p == 0'
+    }
+
+    def "Check that conditions that cannot be analyzed are not reported"() {
+        expect: analyze("""
+            item("X") {
+                p = "a/b";
+                q = "c/d";
+                state("A", p > q);
+                state("B", p < q);
+            }
+        """).empty
+    }
+
+    def "Check that gaps between states are found"() {
+        when:   def messages = analyze("""
+                    item("X") {
+                        p = "a/b";
+                        ${states}
+                    }
+                """)
+        then:   messages == ["no state in item 'X' is true when a/b is ${value}"]
+        where:
+            states                                              | value
+            'state("A", p < 1); state("B", p > 1);'             | "1"
+            'state("LOW", p < 0.5); state("HIGH", p > 0.5);'    | "0.5"
+            'state("A", p <= 1); state("B", p >= 3);'           | "2"
+            'state("A", p > 0 && p != 2); state("B", p <= 0);'  | "2"
+    }
+
+    def "Check that values left out on purpose are not gaps"() {
+        expect: analyze("""
+            item("X") {
+                p = "a/b";
+                ${states}
+            }
+        """).empty
+        where:
+            states << [
+                'state("OFF", p == 0); state("ON", p > 0);',
+                'state("OFF", p == 0); state("BOTH", p == 3);',
+                'state("OFF", p == 0.0); state("SET", p == 1.0);',
+                'state("COLD", p < 0.05); state("HOT", p > 0.5);',
+                'state("UP", p == 0); state("DOWN", p > 0.36 && p < 0.40);'
+            ]
+    }
+
+}
@@ -0,0 +1,127 @@
+package org.flightgear.clgen.eval
+
+import org.flightgear.clgen.Specs
+
+import spock.lang.Specification
+
+class TestStateEvaluator extends Specification {
+
+    static final String SPEC = '''
+        item("Battery") {
+            b = "/controls/electric/battery-switch";
+            state("OFF", !b);
+            state("ON", b);
+        }
+        item("Flaps") {
+            f = "surface-positions/flap-pos-norm[0]";
+            state("UP", f < 0.05);
+            state("TAKEOFF", f >= 0.05 && f <= 0.35);
+            state("SET");
+        }
+        item("Engine") {
+            m = "engines/engine/magnetos";
+            r = "engines/engine/running";
+            s = "sim/aircraft";
+            state("RUNNING", r && (m == 3 || s == "c172p"));
+        }
+    '''
+
+    def tree = new PropertyTree()
+    def evaluator
+
+    def setup() {
+        evaluator = new StateEvaluator(Specs.items(SPEC), tree)
+    }
+
+    def satisfied() {
+        evaluator.evaluate().collectEntries { item, states ->
+            [item.name, states*.name]
+        }
+    }
+
+    def "Check that paths are normalized"() {
+        expect: PropertyTree.normalize(path) == normalized
+        where:
+            path            | normalized
+            "a/b"           | "a/b"
+            "/a/b/"         | "a/b"
+            "a[0]/b[0]"     | "a/b"
+            "a[1]/b"        | "a[1]/b"
+    }
+
+    def "Check that properties can be read as any type"() {
+        when:   tree.set(path, value)
+        then:   tree.getDouble(tree.slot(path)) == number
+        and:    tree.getBoolean(tree.slot(path)) == bool
+        and:    tree.getString(tree.slot(path)) == string
+        where:
+            path    | value     | number    | bool  | string
+            "a"     | 3         | 3.0       | true  | "3"
+            "b"     | 0.5       | 0.5       | true  | "0.5"
+            "c"     | false     | 0.0       | false | "0"
+            "d"     | "1"       | 1.0       | true  | "1"
+            "e"     | "true"    | 1.0       | true  | "true"
+            "f"     | "False"   | 0.0       | false | "False"
+            "g"     | "on"      | Double.NaN| false | "on"
+    }
+
+    def "Check that booleans reported as strings compare as booleans"() {
+        given:  def switches = new StateEvaluator(Specs.items('''
+                    item("Switch") {
+                        s = "controls/switch";
+                        state("ON", s == true && s != false && s == 1);
+                        state("OFF", s == false && s == 0);
+                    }
+                '''), tree)
+        when:   tree.set("controls/switch", value)
+        then:   switches.evaluate().values().flatten()*.name == expected
+        where:
+            value   | expected
+            "true"  | ["ON"]
+            "false" | ["OFF"]
+            true    | ["ON"]
+    }
+
+    def "Check that an unset property is zero, false and empty"() {
+        given:  def slot = tree.slot("x")
+        expect: tree.getDouble(slot) == 0.0
+        and:    !tree.getBoolean(slot)
+        and:    tree.getString(slot) == ""
+    }
+
+    def "Check that states without a condition are not numbered"() {
+        expect: evaluator.states*.name == ["OFF", "ON", "RUNNING", "UP", "TAKEOFF"]
+    }
+
+    def "Check that the satisfied states follow the properties"() {
+        when:   tree.set("controls/electric/battery-switch", battery)
+        and:    tree.set("surface-positions/flap-pos-norm", flaps)
+        then:   satisfied() == expected
+        where:
+            battery | flaps | expected
+            false   | 0.0   | [Battery: ["OFF"], Flaps: ["UP"]]
+            true    | 0.2   | [Battery: ["ON"], Flaps: ["TAKEOFF"]]
+            true    | 1.0   | [Battery: ["ON"]]
+    }
+
+    def "Check that strings and numbers are compared by type"() {
+        given:  tree.set("engines/engine/running", true)
+        when:   tree.set("engines/engine/magnetos", magnetos)
+        and:    tree.set("sim/aircraft", aircraft)
+        then:   satisfied().containsKey("Engine") == running
+        where:
+            magnetos    | aircraft  | running
+            3           | "pup"     | true
+            "3"         | "pup"     | true
+            2           | "pup"     | false
+            2           | "c172p"   | true
+    }
+
+    def "Check that states can be evaluated into an array"() {
+        given:  def satisfied = new boolean[evaluator.states.size()]
+        when:   tree.set("controls/electric/battery-switch", 1)
+        and:    evaluator.evaluate(satisfied)
+        then:   satisfied as List == [false, true, false, true, false]
+    }
+
+}
@@ -0,0 +1,40 @@
+package org.flightgear.clgen.listener
+
+import org.antlr.v4.runtime.CharStreams
+import org.antlr.v4.runtime.CommonTokenStream
+import org.antlr.v4.runtime.tree.ParseTreeWalker
+import org.flightgear.clgen.CLGenLexer
+import org.flightgear.clgen.CLGenParser
+
+import spock.lang.Specification
+
+class TestItemListener extends Specification {
+
+    def "Check that project property keywords can be used as alias names"() {
+        given:
+            def spec = """
+                project("P") {
+                    xref(true);
+                }
+                ${name} = "sim/${name}";
+                item("I") {
+                    ${name}-norm = "controls/${name}";
+                    state("ON", ${name} && ${name}-norm == 1) {
+                        ${name}-norm = ${name};
+                        fgcommand("property-toggle", ${name}=${name}-norm);
+                    }
+                }
+            """
+            def parser = new CLGenParser(new CommonTokenStream(new CLGenLexer(CharStreams.fromString(spec))))
+            def listener = new ItemListener()
+        when:
+            ParseTreeWalker.DEFAULT.walk(listener, parser.specification())
+        then:
+            parser.numberOfSyntaxErrors == 0
+            listener.numberOfErrors == 0
+            listener.items["I"].states["ON"].bindings[1].params[name].expansion == "controls/${name}"
+        where:
+            name << ["template", "compact", "graph", "xref", "columns"]
+    }
+
+}
@@ -0,0 +1,89 @@
+package org.flightgear.clgen.props
+
+import org.flightgear.clgen.Specs
+import org.flightgear.clgen.eval.PropertyTree
+
+import spock.lang.Specification
+
+class TestPropsMonitor extends Specification {
+
+    static final String SPEC = '''
+        item("Battery") {
+            b = "controls/electric/battery-switch";
+            state("ON", b);
+        }
+        item("Flaps") {
+            f = "surface-positions/flap-pos-norm";
+            state("UP", f < 0.05);
+        }
+        checklist("Before Start") {
+            check("Battery", "ON");
+            check("Flaps", "UP");
+        }
+    '''
+
+    def tree = new PropertyTree()
+    def server = new PropsServer(tree, 0)
+    def ast
+
+    def setup() {
+        ast = Specs.ast(SPEC)
+    }
+
+    def cleanup() {
+        server.close()
+    }
+
+    def set(String path, Object value) {
+        synchronized (tree) {
+            tree.set(path, value)
+        }
+    }
+
+    def "Check that the monitor follows the properties of the server"() {
+        given:  def monitor = new PropsMonitor(ast, "localhost", server.port)
+        and:    def checks = ast.getChecklist("Before Start").checks
+        when:   monitor.poll()
+        then:   !monitor.isSatisfied(checks[0])
+        and:    monitor.isSatisfied(checks[1])
+        when:   set("controls/electric/battery-switch", true)
+        and:    set("surface-positions/flap-pos-norm", 0.5)
+        and:    monitor.poll()
+        then:   monitor.isSatisfied(checks[0])
+        and:    !monitor.isSatisfied(checks[1])
+        and:    monitor.status() == "Before Start (1/2)\n    [x] Battery ON\n    [ ] Flaps UP\n"
+        cleanup:
+            monitor.close()
+    }
+
+    def "Check that the status covers every page of a checklist"() {
+        given:  def monitor = new PropsMonitor(Specs.ast('''
+                    item("Battery") {
+                        b = "controls/electric/battery-switch";
+                        state("ON", b);
+                    }
+                    item("Flaps") {
+                        f = "surface-positions/flap-pos-norm";
+                        state("UP", f < 0.05);
+                    }
+                    checklist("Paged") {
+                        page { check("Battery", "ON"); }
+                        page { check("Flaps", "UP"); }
+                    }
+                '''), "localhost", server.port)
+        when:   monitor.poll()
+        then:   monitor.status() == "Paged (1/2)\n    [ ] Battery ON\n    [x] Flaps UP\n"
+        cleanup:
+            monitor.close()
+    }
+
+    def "Check that the server answers in prompt and data modes"() {
+        given:  def socket = new Socket("localhost", server.port)
+        and:    def reader = socket.inputStream.newReader()
+        when:   socket.outputStream << "set /a/b 3\r\nget c\r\ndata\r\nget a/b\r\nget c\r\nquit\r\n"
+        then:   reader.readLines() == ["/> /a/b = '3' (string)", "/> c = '' (none)", "/> 3", ""]
+        cleanup:
+            socket.close()
+    }
+
+}
@@ -0,0 +1,100 @@
+package org.flightgear.clgen.reverse
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.LinkedBlockingDeque
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+
+import spock.lang.Specification
+
+class TestChecklistParser extends Specification {
+
+    Path dir
+    ThreadPoolExecutor executor
+
+    def setup() {
+        dir = Files.createTempDirectory("clgen")
+    }
+
+    def cleanup() {
+        executor?.shutdownNow()
+        dir.toFile().deleteDir()
+    }
+
+    Path file(String name, String content) {
+        Path path = dir.resolve(name)
+        path.text = "<PropertyList>${content}</PropertyList>"
+        path
+    }
+
+    String checklist(String title, Map checks) {
+        "<title>${title}</title>" + checks.collect { name, value ->
+            "<item><name>${name}</name><value>${value}</value></item>"
+        }.join()
+    }
+
+    /*
+     * Single thread that holds back included files until they have all been
+     * submitted and then parses them in reverse, so that the last include
+     * is complete before the first.
+     */
+    def reverseExecutor(int files) {
+        def queue = new LinkedBlockingDeque<Runnable>() {
+            boolean offer(Runnable r) {
+                offerFirst(r)
+            }
+        }
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, queue)
+        executor.execute {
+            long deadline = System.currentTimeMillis() + 5000
+            while (queue.size() < files && System.currentTimeMillis() < deadline)
+                Thread.sleep(1)
+        }
+        executor
+    }
+
+    def "Check that included files are merged in the order of the includes"() {
+        given:
+            file("before-start.xml", checklist("Before Start", [Battery: "ON", Beacon: "ON"]))
+            file("after-start.xml", checklist("After Start", [Battery: "CHECK"]))
+            file("shutdown.xml", checklist("Shutdown", [Beacon: "OFF", Battery: "OFF"]))
+            def wrapper = file("checklists.xml", """
+                <checklist include="before-start.xml"/>
+                <checklist>${checklist("Start", [Magnetos: "BOTH"])}</checklist>
+                <checklist include="after-start.xml"/>
+                <checklist include="shutdown.xml"/>
+            """)
+            def parser = new ChecklistParser(wrapper, dir, dir, new SaxParserPool(), reverseExecutor(3))
+        when:
+            parser.parse(wrapper)
+        then:
+            parser.errors.empty
+            parser.ast.checklists*.title == ["Before Start", "Start", "After Start", "Shutdown"]
+            parser.ast.checklists.collect { it.checks*.item*.name } == [
+                ["Battery", "Beacon"], ["Magnetos"], ["Battery"], ["Beacon", "Battery"]
+            ]
+            parser.items.keySet() as List == ["Battery", "Beacon", "Magnetos"]
+            parser.items.Battery.states.keySet() == ["ON", "CHECK", "OFF"] as Set
+            parser.items.Beacon.states.keySet() == ["ON", "OFF"] as Set
+            parser.merged == 3
+    }
+
+    def "Check that a file included twice is parsed once and merged each time"() {
+        given:
+            file("common.xml", checklist("Common", [Battery: "ON"]))
+            def wrapper = file("checklists.xml", """
+                <checklist include="common.xml"/>
+                <checklist include="common.xml"/>
+            """)
+            def parser = new ChecklistParser(wrapper, dir, dir, new SaxParserPool(), reverseExecutor(1))
+        when:
+            parser.parse(wrapper)
+        then:
+            executor.taskCount == 2
+            parser.ast.checklists*.title == ["Common", "Common"]
+            parser.items.keySet() as List == ["Battery"]
+            parser.merged == 1
+    }
+
+}
@@ -0,0 +1,78 @@
+package org.flightgear.clgen.reverse
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.CompletableFuture
+import java.util.function.Function
+
+import org.flightgear.clgen.GeneratorException
+
+import spock.lang.Specification
+
+class TestIncludeResolver extends Specification {
+
+    Path dir
+    List<Path> parsed = []
+    IncludeResolver resolver
+
+    def setup() {
+        dir = Files.createTempDirectory("clgen")
+        resolver = new IncludeResolver(dir.resolve("base"), { Path p ->
+            parsed << p
+            CompletableFuture.completedFuture(null)
+        } as Function)
+    }
+
+    def cleanup() {
+        dir.toFile().deleteDir()
+    }
+
+    Path file(String name, String content = "<PropertyList/>") {
+        Path path = dir.resolve(name)
+        Files.createDirectories(path.parent)
+        path.text = content
+        path
+    }
+
+    def "Check that an included file is found relative to the including file"() {
+        given:  def including = file("a/checklists.xml")
+        and:    def included = file("a/before-start.xml")
+        expect: resolver.resolve(including, "before-start.xml") == IncludeResolver.canonical(included)
+    }
+
+    def "Check that an included file is found relative to the base directory"() {
+        given:  def including = file("a/checklists.xml")
+        and:    def included = file("base/before-start.xml")
+        expect: resolver.resolve(including, "before-start.xml") == IncludeResolver.canonical(included)
+    }
+
+    def "Check that an included file that cannot be found is reported"() {
+        given:  def including = file("a/checklists.xml")
+        when:   resolver.resolve(including, "before-start.xml")
+        then:   GeneratorException e = thrown()
+        and:    e.message == "Cannot read included file at path ${dir.resolve('a/before-start.xml')}"
+    }
+
+    def "Check that a file included by different relative paths is parsed once"() {
+        given:  def common = file("common.xml")
+        and:    def a = file("checklists.xml")
+        and:    def b = file("sub/after-start.xml")
+        when:   def first = resolver.include(a, "common.xml")
+        and:    def second = resolver.include(b, "../common.xml")
+        and:    def third = resolver.include(b, "../sub/../common.xml")
+        then:   parsed == [IncludeResolver.canonical(common)]
+        and:    first.is(second) && second.is(third)
+    }
+
+    def "Check that files that include each other are reported with the chain of includes"() {
+        given:  def a = file("a.xml", '<PropertyList><checklist include="b.xml"/></PropertyList>')
+        and:    def b = file("b.xml", '<PropertyList><checklist include="a.xml"/></PropertyList>')
+        and:    def parser = new ChecklistParser(a, dir, dir, new SaxParserPool(), null)
+        when:   parser.parse(a)
+        then:   GeneratorException e = thrown()
+        and:    e.message == "Checklist files include each other: " + [a, b, a]
+                    .collect { IncludeResolver.canonical(it) }
+                    .join(" -> ")
+    }
+
+}
@@ -0,0 +1,91 @@
+package org.flightgear.clgen.reverse
+
+import org.flightgear.clgen.ast.bindings.CommandBinding
+import org.flightgear.clgen.ast.bindings.PropertyBinding
+import org.flightgear.clgen.ast.bindings.ValueBinding
+import org.flightgear.clgen.ast.conditions.BinaryCondition
+import org.flightgear.clgen.ast.conditions.Condition
+import org.flightgear.clgen.ast.conditions.Operator
+import org.flightgear.clgen.ast.conditions.UnaryCondition
+import org.xml.sax.helpers.AttributesImpl
+
+import spock.lang.Specification
+
+class TestLogicBuilder extends Specification {
+
+    def builder = new LogicBuilder()
+
+    /*
+     * Feeds a tree of nested lists to the builder, e.g.
+     * ["and", ["property", "a/b"], ["value", "1"]]
+     */
+    def feed(List element) {
+        String name = element[0]
+        builder.start(name, new AttributesImpl())
+        String text = ""
+        element.tail().each {
+            if (it instanceof List)
+                feed(it)
+            else
+                text = it
+        }
+        builder.end(name, text)
+    }
+
+    def "Check that values are typed from their text"() {
+        expect: LogicBuilder.value(text, type) == value
+        where:
+            text    | type      | value
+            "1"     | null      | 1
+            "1.5"   | null      | 1.5d
+            "on"    | null      | "on"
+            "1"     | "string"  | "1"
+            "true"  | "bool"    | true
+            "2"     | "double"  | 2.0d
+    }
+
+    def "Check that a comparison becomes a binary condition"() {
+        when:   feed(["condition", ["equals", ["property", "a/b"], ["value", "1"]]])
+        then:   builder.result instanceof Condition
+        and:    builder.result.condition instanceof BinaryCondition
+        and:    builder.result.condition.operator == Operator.EQ
+        and:    builder.unsupported == null
+    }
+
+    def "Check that several conditions are joined with and"() {
+        when:   feed(["condition", ["property", "a"], ["not", ["property", "b"]]])
+        then:   builder.result.condition.operator == Operator.AND
+        and:    builder.result.condition.rhs instanceof UnaryCondition
+        and:    builder.result.condition.rhs.operator == Operator.NOT
+    }
+
+    def "Check that property assignments become value and property bindings"() {
+        when:   feed(["binding", ["command", "property-assign"], ["property", "a"], rhs])
+        then:   type.isInstance(builder.result)
+        where:
+            rhs                 | type
+            ["value", "1"]      | ValueBinding
+            ["property", "b"]   | PropertyBinding
+    }
+
+    def "Check that other commands keep their parameters in order"() {
+        when:   feed(["binding", ["command", "nasal"], ["script", "x()"], ["module", "m"]])
+        then:   builder.result instanceof CommandBinding
+        and:    builder.result.params.keySet() as List == ["script", "module"]
+    }
+
+    def "Check that parameters named after keywords are not supported"() {
+        when:   feed(["binding", ["command", "dialog-show"], [name, "hi"]])
+        then:   builder.result == null
+        and:    builder.unsupported == "<${name}> in <binding> is not supported"
+        where:
+            name << ["text", "state", "check", "true"]
+    }
+
+    def "Check that repeated parameters are not supported"() {
+        when:   feed(["binding", ["command", "dialog-apply"], ["object-name", "a"], ["object-name", "b"]])
+        then:   builder.result == null
+        and:    builder.unsupported != null
+    }
+
+}
@@ -0,0 +1,108 @@
+package org.flightgear.clgen.reverse
+
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.file.Files
+import java.nio.file.Path
+
+import spock.lang.Specification
+
+class TestMappedInput extends Specification {
+
+    Path dir
+
+    def setup() {
+        dir = Files.createTempDirectory("clgen")
+    }
+
+    def cleanup() {
+        dir.toFile().deleteDir()
+    }
+
+    Path file(int size, String tail = "") {
+        Path path = dir.resolve("checklists.xml")
+        path.bytes = ("x" * (size - tail.length()) + tail).getBytes("US-ASCII")
+        path
+    }
+
+    ByteBuffer buffer(String s) {
+        ByteBuffer.wrap(s.getBytes("US-ASCII"))
+    }
+
+    def "Check that large files are mapped and small files are read"() {
+        given:  def path = file(size, "<checklist>")
+        when:   def buffer = MappedInput.map(path)
+        then:   (buffer instanceof MappedByteBuffer) == mapped
+        and:    buffer.remaining() == size
+        and:    MappedInput.stream(buffer).bytes == path.bytes
+        where:
+            size            | mapped
+            64 * 1024 - 1   | false
+            64 * 1024       | true
+            200 * 1024      | true
+    }
+
+    def "Check that a match at the end of a mapped file is found"() {
+        given:  def buffer = MappedInput.map(file(128 * 1024, tail))
+        expect: MappedInput.contains(buffer, "<checklist") == found
+        where:
+            tail            | found
+            "<checklist"    | true
+            "<checklis"     | false
+            ""              | false
+    }
+
+    def "Check that only the characters between position and limit are searched"() {
+        given:  def buffer = buffer("<checklist include='a.xml'/>")
+        and:    buffer.position(position).limit(limit)
+        expect: MappedInput.contains(buffer, "<checklist") == found
+        where:
+            position    | limit     | found
+            0           | 28        | true
+            0           | 10        | true
+            0           | 9         | false
+            1           | 28        | false
+            0           | 0         | false
+    }
+
+    def "Check that a stream reads from position to limit without changing the buffer"() {
+        given:  def buffer = buffer("0123456789")
+        and:    buffer.position(2).limit(8)
+        when:   def bytes = MappedInput.stream(buffer).bytes
+        then:   new String(bytes, "US-ASCII") == "234567"
+        and:    buffer.position() == 2 && buffer.limit() == 8
+    }
+
+    def "Check that reads stop at the end of the buffer"() {
+        given:  def stream = MappedInput.stream(ByteBuffer.wrap([1, 2, 0xff] as byte[]))
+        and:    def b = new byte[4]
+        expect:
+            stream.read(b, 0, 0) == 0
+            stream.read() == 1
+            stream.available() == 2
+            stream.read(b, 1, 3) == 2
+            b == [0, 2, 0xff, 0] as byte[]
+            stream.read() == -1
+            stream.read(b, 0, 4) == -1
+            stream.read(b, 0, 0) == 0
+    }
+
+    def "Check that skipping is limited to the rest of the buffer"() {
+        given:  def stream = MappedInput.stream(buffer("0123456789"))
+        expect:
+            stream.skip(-1) == 0
+            stream.skip(0) == 0
+            stream.skip(3) == 3
+            stream.read() == (int)'3'
+            stream.skip(Long.MAX_VALUE) == 6
+            stream.skip(1) == 0
+            stream.read() == -1
+    }
+
+    def "Check that a byte is read as an unsigned value"() {
+        expect: MappedInput.stream(ByteBuffer.wrap([0x80, 0xff] as byte[])).with {
+            [read(), read()]
+        } == [0x80, 0xff]
+    }
+
+}